@@ -9,8 +9,11 @@
  */
 package averroes;
 
+import averroes.gencg.AndroidManifest;
+import averroes.gencg.AnnotationScanner;
 import averroes.options.AverroesOptions;
 import averroes.util.io.Paths;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -24,11 +27,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.FileFilterUtils;
 import org.jf.dexlib2.iface.ClassDef;
 import org.jf.dexlib2.iface.DexFile;
@@ -56,6 +61,8 @@ public class ArchiveOrganizer {
   private ArrayList<String> libraryClassPath;
   private Set<String> applicationClassNames;
   private Set<String> libraryClassNames;
+  private AnnotationScanner annotationScanner;
+  private AndroidManifest androidManifest;
 
   private Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -72,6 +79,7 @@ public class ArchiveOrganizer {
     libraryClassPath = new ArrayList<>();
     if (!AverroesOptions.isAndroidApk()) {
       organizedApplicationJarFile = new JarFile(Paths.organizedApplicationJarFile());
+      if (AverroesOptions.isAnnotationPrescan()) annotationScanner = new AnnotationScanner();
     }
     organizedLibraryJarFile = new JarFile(Paths.organizedLibraryJarFile());
   }
@@ -94,6 +102,16 @@ public class ArchiveOrganizer {
     return libraryClassNames;
   }
 
+  /**
+   * Get the manifest of the input apk. It is read while the apk is processed, and is null if the
+   * input is not an apk.
+   *
+   * @return
+   */
+  public AndroidManifest androidManifest() {
+    return androidManifest;
+  }
+
   /**
    * Organize the input JAR files into two JAR files only: one for application classes, the other
    * for library classes.
@@ -106,8 +124,11 @@ public class ArchiveOrganizer {
     // clean up
     Paths.deleteDirectory(AverroesOptions.getOutputDirectory() + File.separator + "lib");
     Paths.deleteDirectory(Paths.applicationUnpackedOutputDirectory().toString());
+    // an index left over from an earlier run must not be picked up if this run does not scan
+    FileUtils.deleteQuietly(Paths.annotationIndexFile());
     libraryClassPath.addAll(AverroesOptions.getLibraryClassPath());
     processApplicationFiles();
+    if (annotationScanner != null) annotationScanner.write(Paths.annotationIndexFile());
     processDependencies();
     if (organizedApplicationJarFile != null) organizedApplicationJarFile.close();
     organizedLibraryJarFile.close();
@@ -173,33 +194,49 @@ public class ArchiveOrganizer {
   }
 
   /**
-   * Process a give APK file.
+   * Process a give APK file. The manifest is read from the opened apk first and kept for the entry
+   * point detection. Soot then parses the dex files one after the other, only the class names of
+   * the parsed dex files are collected in parallel. They are added in the order of the dex files.
    *
    * @param apk
    */
   private void processApk(String apk) {
     Options.v().set_process_multiple_dex(true);
-    try {
-      File apkFile = new File(apk);
+    File apkFile = new File(apk);
+    logger.info("Processing input apk: " + apkFile.getAbsolutePath());
+    try (ZipFile apkArchive = new ZipFile(apkFile)) {
+      androidManifest = AndroidManifest.read(apkArchive);
+      logger.info("Package name in manifest: " + androidManifest.getPackageName());
 
-      logger.info("Processing input apk: " + apkFile.getAbsolutePath());
       List<DexContainer<? extends DexFile>> dexFiles =
           DexFileProvider.v().getDexFromSource(apkFile);
-      for (DexContainer<? extends DexFile> dex : dexFiles) {
-        DexEntry<? extends DexFile> base = dex.getBase();
-        for (ClassDef c : base.getDexFile().getClasses()) {
-          String typeName = c.getType();
-          typeName = typeName.replace('/', '.');
-          String className = typeName.substring(1, typeName.length() - 1);
-          addDexClass(className, true);
-        }
-      }
+      logger.info("Found " + dexFiles.size() + " dex file(s) in apk.");
+      List<List<String>> dexClassNames =
+          dexFiles.parallelStream().map(this::getDexClassNames).collect(Collectors.toList());
+      // the first definition of a class wins, as in the serial order of the dex files
+      dexClassNames.forEach(classNames -> classNames.forEach(c -> addDexClass(c, true)));
     } catch (IOException e) {
       e.printStackTrace();
       System.exit(1);
     }
   }
 
+  /**
+   * Get the names of the classes defined in the given dex file.
+   *
+   * @param dex
+   * @return
+   */
+  private List<String> getDexClassNames(DexContainer<? extends DexFile> dex) {
+    DexEntry<? extends DexFile> base = dex.getBase();
+    List<String> classNames = new ArrayList<>();
+    for (ClassDef c : base.getDexFile().getClasses()) {
+      String typeName = c.getType();
+      classNames.add(typeName.substring(1, typeName.length() - 1).replace('/', '.'));
+    }
+    return classNames;
+  }
+
   private void processExecutableJar(String fileName) {
     long startTime = System.currentTimeMillis();
     // Exit if the fileName is empty
@@ -414,13 +451,13 @@ public class ArchiveOrganizer {
       if (entry.getName().startsWith("BOOT-INF/classes/")) {
         entryName = entryName.replace("BOOT-INF/classes/", "");
       }
-      extractClassFile(sourceArchive, entry, entryName, organizedApplicationJarFile);
+      extractAndScanClassFile(sourceArchive, entry, entryName, organizedApplicationJarFile);
       String className = entryName.replace("/", ".");
       className = className.substring(0, className.length() - 6);
       applicationClassNames.add(className);
       AverroesOptions.loadApplicationClass(className);
     } else {
-      extractClassFile(sourceArchive, entry, entryName, organizedApplicationJarFile);
+      extractAndScanClassFile(sourceArchive, entry, entryName, organizedApplicationJarFile);
       String className = entryName.replace("/", ".");
       className = className.substring(0, className.length() - 6);
       applicationClassNames.add(className);
@@ -456,4 +493,28 @@ public class ArchiveOrganizer {
     // temporary file used.
     destArchive.add(sourceArchive.getInputStream(entry), entryName);
   }
+
+  /**
+   * Extract a class file to specified file. If the annotation pre-scan is enabled, the annotations
+   * are read from the same bytes that are written to the destination archive.
+   *
+   * @param sourceArchive
+   * @param entry
+   * @param entryName
+   * @param destArchive
+   * @throws IOException
+   */
+  private void extractAndScanClassFile(
+      ZipFile sourceArchive, ZipEntry entry, String entryName, JarFile destArchive)
+      throws IOException {
+    if (annotationScanner == null) {
+      extractClassFile(sourceArchive, entry, entryName, destArchive);
+      return;
+    }
+    InputStream in = sourceArchive.getInputStream(entry);
+    byte[] classFile = IOUtils.toByteArray(in);
+    in.close();
+    annotationScanner.scan(classFile);
+    destArchive.add(new ByteArrayInputStream(classFile), entryName);
+  }
 }
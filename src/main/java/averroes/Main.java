@@ -9,10 +9,10 @@
  */
 package averroes;
 
-import averroes.gencg.AndroidEntryPointClassesDetector;
 import averroes.gencg.ClassesDetector;
+import averroes.gencg.CompositeClassesDetector;
 import averroes.gencg.EntryPointConfigurationReader;
-import averroes.gencg.SpringEntryPointClassesDetector;
+import averroes.gencg.EntryPointDetection;
 import averroes.options.AverroesOptions;
 import averroes.soot.ClassFileProvider;
 import averroes.soot.CodeGenerator;
@@ -62,7 +62,7 @@ public class Main {
       AverroesOptions.processArguments(args);
       logger.info("Framework type: " + AverroesOptions.getFrameworkType());
 
-      organizeInput();
+      ArchiveOrganizer archiveOrganizer = organizeInput();
 
       if (AverroesOptions.noInstrumetation()) return;
 
@@ -79,7 +79,7 @@ public class Main {
 
       buildClassHierarchy();
 
-      generateClasses();
+      generateClasses(archiveOrganizer);
       double timeUsedByAverroes = TimeUtils.elapsedTime();
       logger.info(
           "Placeholder library classes created and validated in "
@@ -122,7 +122,7 @@ public class Main {
     aveJarFile.addAverroesLibraryClassAndDummyMainClassFile();
   }
 
-  private static void generateClasses() throws IOException {
+  private static void generateClasses(ArchiveOrganizer archiveOrganizer) throws IOException {
     // Output some code generation statistics
     logger.info("");
     logger.info("Generating extra library classes...");
@@ -132,26 +132,17 @@ public class Main {
     logger.info("Detecting Entry points");
     EntryPointConfigurationReader reader = new EntryPointConfigurationReader();
 
-    ClassesDetector cdetector;
-    switch (AverroesOptions.getFrameworkType()) {
-      case FrameworkType.ANDROID:
-        cdetector = new AndroidEntryPointClassesDetector(Hierarchy.v(), reader);
-        break;
-      case FrameworkType.SPRING:
-        cdetector = new SpringEntryPointClassesDetector(Hierarchy.v(), reader);
-        break;
-      default:
-        cdetector = new SpringEntryPointClassesDetector(Hierarchy.v(), reader);
-        break;
-    }
-    Map<SootClass, SootClass> entryPointClasses = cdetector.getEntryPointClasses();
+    ClassesDetector cdetector =
+        CompositeClassesDetector.load(Hierarchy.v(), reader, archiveOrganizer);
+    EntryPointDetection detection = new EntryPointDetection(cdetector, Hierarchy.v());
+    Map<SootClass, SootClass> entryPointClasses = detection.getEntryPointClasses();
     logger.info("Total entry point classes: " + entryPointClasses.size());
     CodeGenerator.v().createCraftedInterfacesOfEntryPointClasses(entryPointClasses, reader);
 
-    Map<SootClass, Set<SootField>> createObjects = cdetector.getCreateObjects();
+    Map<SootClass, Set<SootField>> createObjects = detection.getCreateObjects();
     CodeGenerator.v().createObjects(createObjects);
 
-    Map<SootClass, Set<SootMethod>> objectProviders = cdetector.getObjectProviders();
+    Map<SootClass, Set<SootMethod>> objectProviders = detection.getObjectProviders();
     CodeGenerator.v().setObjectProviders(objectProviders);
     // Create the Averroes library class
     logger.info("");
@@ -201,10 +192,9 @@ public class Main {
       // Create empty classes for the basic classes required internally by
       // Soot
       logger.info("Generating empty basic library classes required by Soot...");
-      for (SootClass basicClass :
-          Hierarchy.v().getBasicClassesDatabase().getMissingBasicClasses()) {
-        CodeGenerator.writeClassFile(Paths.libraryClassesOutputDirectory().getPath(), basicClass);
-      }
+      Hierarchy.v()
+          .getBasicClassesDatabase()
+          .writeMissingBasicClasses(Paths.libraryClassesOutputDirectory());
     }
   }
 
@@ -228,6 +218,9 @@ public class Main {
     Hierarchy.v().cleanupLibraryClasses();
 
     // Output some cleanup statistics
+    if (AverroesOptions.isPruneLibrary()) {
+      logger.info("# removed library classes: " + Hierarchy.v().getRemovedLibraryClassCount());
+    }
     logger.info("# removed library methods: " + Hierarchy.v().getRemovedLibraryMethodCount());
     logger.info("# removed library fields: " + Hierarchy.v().getRemovedLibraryFieldCount());
     // The +1 is for Finalizer.register that will be added later
@@ -235,7 +228,8 @@ public class Main {
     logger.info("# final library fields: " + Hierarchy.v().getLibraryFieldCount());
   }
 
-  private static void organizeInput() throws IOException, FileNotFoundException, ZipException {
+  private static ArchiveOrganizer organizeInput()
+      throws IOException, FileNotFoundException, ZipException {
     // Create the output directory and clean up any class files in there
     FileUtils.forceMkdir(Paths.libraryClassesOutputDirectory());
     FileUtils.cleanDirectory(Paths.classesOutputDirectory());
@@ -248,6 +242,7 @@ public class Main {
     // Print some statistics
     logger.info("# application classes: " + archiveOrganizer.applicationClassNames().size());
     logger.info("# library classes: " + archiveOrganizer.libraryClassNames().size());
+    return archiveOrganizer;
   }
 
   private static void initializeSootAndLoadClasses() throws IOException {
@@ -107,6 +107,24 @@ public final class FrameworksOptions {
           .required(false)
           .build();
 
+  private static Option jimpleArchive =
+      Option.builder("ja")
+          .longOpt("jimple-archive")
+          .desc(
+              "setting this flag will make Averroes write the Jimple output into one zip archive per printer type instead of one file per class")
+          .hasArg(false)
+          .required(false)
+          .build();
+
+  private static Option parallelBodies =
+      Option.builder("pb")
+          .longOpt("parallel-bodies")
+          .desc(
+              "setting this flag will make Averroes generate the Jimple bodies of the framework methods in parallel")
+          .hasArg(false)
+          .required(false)
+          .build();
+
   private static Options options =
       new Options()
           .addOption(input)
@@ -117,7 +135,9 @@ public final class FrameworksOptions {
           .addOption(analysis)
           .addOption(help)
           .addOption(enableGuards)
-          .addOption(includeDependencies);
+          .addOption(includeDependencies)
+          .addOption(jimpleArchive)
+          .addOption(parallelBodies);
 
   private static CommandLine cmd;
 
@@ -286,4 +306,24 @@ public final class FrameworksOptions {
   public static boolean isIncludeDependencies() {
     return cmd.hasOption(includeDependencies.getOpt());
   }
+
+  /**
+   * Setting this flag will make Averroes write the Jimple output into one zip archive per printer
+   * type instead of one file per class.
+   *
+   * @return
+   */
+  public static boolean isJimpleArchive() {
+    return cmd.hasOption(jimpleArchive.getOpt());
+  }
+
+  /**
+   * Setting this flag will make Averroes generate the Jimple bodies of the framework methods in
+   * parallel.
+   *
+   * @return
+   */
+  public static boolean isParallelBodies() {
+    return cmd.hasOption(parallelBodies.getOpt());
+  }
 }
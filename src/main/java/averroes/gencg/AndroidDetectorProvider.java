@@ -0,0 +1,23 @@
+package averroes.gencg;
+
+import averroes.ArchiveOrganizer;
+import averroes.options.AverroesOptions;
+import averroes.soot.Hierarchy;
+
+/** @author Linghui Luo */
+public class AndroidDetectorProvider implements DetectorProvider {
+
+  @Override
+  public boolean isApplicable(
+      Hierarchy classHierarchy, EntryPointConfigurationReader reader, ArchiveOrganizer organizer) {
+    return AverroesOptions.isAndroidApk();
+  }
+
+  @Override
+  public ClassesDetector createDetector(
+      Hierarchy classHierarchy, EntryPointConfigurationReader reader, ArchiveOrganizer organizer) {
+    // the manifest was read when the organizer processed the input apk
+    return new AndroidEntryPointClassesDetector(
+        classHierarchy, reader, organizer.androidManifest());
+  }
+}
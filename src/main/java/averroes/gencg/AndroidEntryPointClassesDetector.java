@@ -3,21 +3,12 @@ package averroes.gencg;
 import averroes.FrameworkType;
 import averroes.options.AverroesOptions;
 import averroes.soot.Hierarchy;
-import java.io.IOException;
-import java.io.InputStream;
+import averroes.util.ClassNameMatcher;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import pxb.android.axml.AxmlReader;
-import pxb.android.axml.AxmlVisitor;
-import pxb.android.axml.NodeVisitor;
 import soot.SootClass;
 import soot.SootField;
 import soot.SootMethod;
@@ -25,93 +16,113 @@ import soot.SootMethod;
 /** @author Linghui Luo */
 public class AndroidEntryPointClassesDetector implements SubTypingEntryPointClassDetector {
   private static Logger logger = LoggerFactory.getLogger(AndroidEntryPointClassesDetector.class);
-  protected Set<String> ANDROID_ENTRYPOINT_CLASSES;
+  protected ClassNameMatcher ANDROID_ENTRYPOINT_CLASSES;
+  protected Set<String> androidEntryPointClassSignatures;
   protected Hierarchy classHierarchy;
+  protected AndroidManifest manifest;
 
   protected String packageName; // package name stored in AndroidManifest.xml
 
   public AndroidEntryPointClassesDetector(
-      Hierarchy hierachy, EntryPointConfigurationReader reader) {
+      Hierarchy hierachy, EntryPointConfigurationReader reader, AndroidManifest manifest) {
     this.classHierarchy = hierachy;
-    this.ANDROID_ENTRYPOINT_CLASSES = reader.getEntryPointClasses(FrameworkType.ANDROID);
+    this.ANDROID_ENTRYPOINT_CLASSES = reader.getEntryPointClassMatcher(FrameworkType.ANDROID);
+    this.androidEntryPointClassSignatures =
+        reader.getEntryPointClasses(FrameworkType.ANDROID) == null
+            ? Collections.emptySet()
+            : reader.getEntryPointClasses(FrameworkType.ANDROID);
+    this.manifest = manifest;
     readPackageName();
   }
 
-  public Map<SootClass, SootClass> getEntryPointClasses() {
-    Map<SootClass, SootClass> ret =
-        getEntryPointClasses(classHierarchy, ANDROID_ENTRYPOINT_CLASSES);
-
-    ret =
-        ret.entrySet().stream()
-            .filter(x -> !x.getKey().getPackageName().startsWith("android.support."))
-            .collect(Collectors.toMap(x -> x.getKey(), x -> x.getValue()));
+  /**
+   * Get the entry point classes of the apk. The components declared in the manifest are checked
+   * first. Only the configured entry point classes that cannot be declared in a manifest (e.g.,
+   * android.app.Fragment or android.content.ServiceConnection) are then looked up through their
+   * subtypes. Without any declared component, or if the configuration uses package wildcards, all
+   * application classes are matched instead.
+   *
+   * @return
+   */
+  public DetectedEntryPointClasses detectEntryPointClasses() {
+    DetectedEntryPointClasses ret;
+    if (manifest.getComponents().isEmpty()
+        || androidEntryPointClassSignatures.stream().anyMatch(s -> s.contains("*"))) {
+      ret = detectEntryPointClasses(classHierarchy, ANDROID_ENTRYPOINT_CLASSES);
+      addDeclaredComponents(ret);
+    } else {
+      ret = new DetectedEntryPointClasses();
+      addDeclaredComponents(ret);
+      addUndeclaredEntryPointClasses(ret);
+    }
+    ret.retainClasses(c -> !c.getPackageName().startsWith("android.support."));
 
-    for (SootClass androidClass : ret.keySet()) {
+    Map<SootClass, SootClass> epClasses = ret.getEntryPointClasses();
+    for (SootClass androidClass : epClasses.keySet()) {
       logger.info(
-          "Detected entry point class: {} -> {}", androidClass.getName(), ret.get(androidClass));
+          "Detected entry point class: {} -> {}",
+          androidClass.getName(),
+          epClasses.get(androidClass));
     }
     return ret;
   }
 
-  public void readPackageName() {
-    String apkPath = AverroesOptions.getAndroidApk();
-    InputStream manifestIS = null;
-    ZipFile apkFile = null;
-    try {
-      try {
-        apkFile = new ZipFile(apkPath);
-        for (Enumeration<? extends ZipEntry> entries = apkFile.entries();
-            entries.hasMoreElements(); ) {
-          ZipEntry entry = entries.nextElement();
-          String entryName = entry.getName();
-          if (entryName.equals("AndroidManifest.xml")) {
-            manifestIS = apkFile.getInputStream(entry);
-            break;
-          }
-        }
-      } catch (Exception e) {
-        logger.error("Exception when looking for manifest in apk: " + apkPath);
-      }
+  /**
+   * Add the components declared in the manifest to the given entry point classes. Each of them is
+   * an entry point, even if none of its supertypes is listed in the configuration, in which case it
+   * is mapped to the framework class its kind of component has to extend.
+   *
+   * @param entryPointClasses
+   */
+  protected void addDeclaredComponents(DetectedEntryPointClasses entryPointClasses) {
+    manifest
+        .getComponents()
+        .forEach(
+            (component, type) -> {
+              SootClass c = classHierarchy.getClass(component);
+              if (c == null || !AverroesOptions.isLoadedApplicationClass(component)) return;
+              SootClass epClass =
+                  getEntryPointSupertype(classHierarchy, c, ANDROID_ENTRYPOINT_CLASSES);
+              if (epClass == null) epClass = classHierarchy.getClass(type);
+              if (epClass != null) entryPointClasses.put(c, epClass, sTag);
+            });
+  }
 
-      if (manifestIS == null) {
-        logger.error("Could not find sdk version in Android manifest!");
+  /**
+   * Add the application subtypes of the configured entry point classes that are not components
+   * (e.g., fragments and service connections) to the given entry point classes. Subtypes of
+   * component classes are skipped, since a component that is not declared in the manifest is never
+   * started by the framework.
+   *
+   * @param entryPointClasses
+   */
+  protected void addUndeclaredEntryPointClasses(DetectedEntryPointClasses entryPointClasses) {
+    for (String signature : androidEntryPointClassSignatures) {
+      SootClass epClass = classHierarchy.getClass(signature);
+      if (epClass == null || isComponentClass(epClass)) continue;
+      Set<SootClass> subtypes =
+          epClass.isInterface()
+              ? classHierarchy.getImplementersOf(epClass)
+              : classHierarchy.getSubclassesOf(epClass);
+      for (SootClass c : subtypes) {
+        if (entryPointClasses.getEntryPointClasses().containsKey(c)
+            || !AverroesOptions.isLoadedApplicationClass(c.getName())) continue;
+        SootClass supertype = getEntryPointSupertype(classHierarchy, c, ANDROID_ENTRYPOINT_CLASSES);
+        if (supertype != null) entryPointClasses.put(c, supertype, sTag);
       }
-      if (manifestIS != null)
-        try {
-          AxmlReader xmlReader = new AxmlReader(IOUtils.toByteArray(manifestIS));
-          xmlReader.accept(
-              new AxmlVisitor() {
-                private String nodeName = null;
-
-                @Override
-                public void attr(String ns, String name, int resourceId, int type, Object obj) {
-                  super.attr(ns, name, resourceId, type, obj);
-                  if (nodeName != null && name != null) {
-                    if (nodeName.equals("manifest")) {
-                      if (name.equals("package")) packageName = obj.toString();
-                    }
-                  }
-                }
+    }
+  }
 
-                @Override
-                public NodeVisitor child(String ns, String name) {
-                  // update the xml node name
-                  nodeName = name;
-                  return this;
-                }
-              });
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-    } finally {
-      if (apkFile != null) {
-        try {
-          apkFile.close();
-        } catch (IOException e) {
-          throw new RuntimeException("Error when looking for manifest in apk: " + e);
-        }
-      }
+  private boolean isComponentClass(SootClass c) {
+    if (AndroidManifest.isComponentType(c.getName())) return true;
+    for (SootClass superclass : classHierarchy.getSuperclassesOf(c)) {
+      if (AndroidManifest.isComponentType(superclass.getName())) return true;
     }
+    return false;
+  }
+
+  public void readPackageName() {
+    packageName = manifest.getPackageName();
   }
 
   @Override
@@ -0,0 +1,139 @@
+package averroes.gencg;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pxb.android.axml.AxmlReader;
+import pxb.android.axml.AxmlVisitor;
+import pxb.android.axml.NodeVisitor;
+
+/**
+ * The parsed AndroidManifest.xml of an apk. Every read returns a new instance, such that nothing is
+ * shared between runs. The archive organizer reads the manifest of the input apk while it processes
+ * the apk, and the Android detector provider hands it to the detectors it creates.
+ *
+ * @author Linghui Luo
+ */
+public class AndroidManifest {
+
+  public static final String MANIFEST_ENTRY = "AndroidManifest.xml";
+
+  /** The framework class each kind of declared component has to extend. */
+  private static final Map<String, String> COMPONENT_TYPES = new HashMap<>();
+
+  static {
+    COMPONENT_TYPES.put("activity", "android.app.Activity");
+    COMPONENT_TYPES.put("service", "android.app.Service");
+    COMPONENT_TYPES.put("receiver", "android.content.BroadcastReceiver");
+    COMPONENT_TYPES.put("provider", "android.content.ContentProvider");
+    COMPONENT_TYPES.put("application", "android.app.Application");
+  }
+
+  private static Logger logger = LoggerFactory.getLogger(AndroidManifest.class);
+
+  private String packageName;
+  private Map<String, String> components;
+
+  private AndroidManifest() {
+    components = new LinkedHashMap<>();
+  }
+
+  /**
+   * Read the manifest from the given, already opened, apk file.
+   *
+   * @param apkFile
+   * @return
+   * @throws IOException
+   */
+  public static AndroidManifest read(ZipFile apkFile) throws IOException {
+    AndroidManifest manifest = new AndroidManifest();
+    ZipEntry entry = apkFile.getEntry(MANIFEST_ENTRY);
+    if (entry == null) {
+      logger.error("Could not find " + MANIFEST_ENTRY + " in apk: " + apkFile.getName());
+      return manifest;
+    }
+    try (InputStream manifestIS = apkFile.getInputStream(entry)) {
+      manifest.parse(IOUtils.toByteArray(manifestIS));
+    }
+    return manifest;
+  }
+
+  /**
+   * Check if the given class is one of the framework classes that components declared in a manifest
+   * have to extend.
+   *
+   * @param className
+   * @return
+   */
+  public static boolean isComponentType(String className) {
+    return COMPONENT_TYPES.containsValue(className);
+  }
+
+  private void parse(byte[] manifest) {
+    Map<String, String> declaredComponents = new LinkedHashMap<>();
+    try {
+      AxmlReader xmlReader = new AxmlReader(manifest);
+      xmlReader.accept(
+          new AxmlVisitor() {
+            private String nodeName = null;
+
+            @Override
+            public void attr(String ns, String name, int resourceId, int type, Object obj) {
+              super.attr(ns, name, resourceId, type, obj);
+              if (nodeName != null && name != null) {
+                if (nodeName.equals("manifest")) {
+                  if (name.equals("package")) packageName = obj.toString();
+                } else if (COMPONENT_TYPES.containsKey(nodeName) && name.equals("name")) {
+                  declaredComponents.put(obj.toString(), COMPONENT_TYPES.get(nodeName));
+                }
+              }
+            }
+
+            @Override
+            public NodeVisitor child(String ns, String name) {
+              // update the xml node name
+              nodeName = name;
+              return this;
+            }
+          });
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+    // component names may be relative to the package name
+    declaredComponents.forEach((name, type) -> components.put(toClassName(name), type));
+  }
+
+  private String toClassName(String name) {
+    if (packageName == null) return name;
+    if (name.startsWith(".")) return packageName + name;
+    if (!name.contains(".")) return packageName + "." + name;
+    return name;
+  }
+
+  /**
+   * The package name stored in AndroidManifest.xml.
+   *
+   * @return
+   */
+  public String getPackageName() {
+    return packageName;
+  }
+
+  /**
+   * The activities, services, receivers, providers and the application class declared in
+   * AndroidManifest.xml, each mapped to the framework class its kind of component has to extend.
+   *
+   * @return
+   */
+  public Map<String, String> getComponents() {
+    return Collections.unmodifiableMap(components);
+  }
+}
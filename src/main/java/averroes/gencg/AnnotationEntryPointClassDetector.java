@@ -1,74 +1,93 @@
 package averroes.gencg;
 
 import averroes.soot.Hierarchy;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import soot.Scene;
 import soot.SootClass;
 import soot.SootMethod;
-import soot.Type;
-import soot.tagkit.AnnotationTag;
-import soot.tagkit.VisibilityAnnotationTag;
 
 /** @author Linghui Luo */
 public interface AnnotationEntryPointClassDetector extends ClassesDetector {
 
   public EntryPointTypeTag aTag = new EntryPointTypeTag(EntryPointTypeTag.ANNOTATION);
-  public Map<SootClass, Set<SootMethod>> objectProviders = new HashMap<>();
-  public Map<Type, Integer> priorities = new HashMap<>();
 
-  default Map<SootClass, SootClass> getEntryPointClasses(
+  /**
+   * Detect the application classes annotated with one of the given annotation types, or with a
+   * custom stereotype of them, and the methods annotated with one of the given method annotation
+   * types. The classes are tagged and the methods are registered once the result is applied.
+   *
+   * @param classHierarchy
+   * @param epClassSignatures
+   * @param epMethodAnnotationSignatures
+   * @return
+   */
+  default DetectedEntryPointClasses detectEntryPointClasses(
       Hierarchy classHierarchy,
       Set<String> epClassSignatures,
-      Set<String> epMethodAnnotationSignatures,
-      Set<String> objectProviderAnnotationSignatures) {
-    Map<SootClass, SootClass> ret = new HashMap<>();
-    for (SootClass c : classHierarchy.getApplicationClasses()) {
-      VisibilityAnnotationTag ctag = (VisibilityAnnotationTag) c.getTag("VisibilityAnnotationTag");
-      if (ctag != null) {
-        for (AnnotationTag t : ctag.getAnnotations()) {
-          String type = t.getType().substring(1).replace("/", ".").replace(";", "");
-          if (epClassSignatures.contains(type)) {
-            c.addTag(aTag);
-            ret.put(c, classHierarchy.getClass(type));
-            break;
-          }
-        }
-      }
-      for (SootMethod m : c.getMethods()) {
-        VisibilityAnnotationTag mtag =
-            (VisibilityAnnotationTag) m.getTag("VisibilityAnnotationTag");
-        if (mtag != null) {
-          for (AnnotationTag t : mtag.getAnnotations()) {
-            String type = t.getType().substring(1).replace("/", ".").replace(";", "");
-            if (epMethodAnnotationSignatures.contains(type)) {
-              Hierarchy.v().addAnnotatedApplicationMethods(m);
-            }
-            if (objectProviderAnnotationSignatures.contains(type)) {
-              String returnType = m.getReturnType().toString();
-              SootClass returnClass = Scene.v().getSootClass(returnType);
-              Set<SootMethod> providers =
-                  objectProviders.getOrDefault(returnClass, new HashSet<>());
-              providers.add(m);
-              objectProviders.put(returnClass, providers);
-              int priority = priorities.getOrDefault(returnClass.getType(), 0);
-              priorities.put(returnClass.getType(), priority);
-              List<Type> parameters = m.getParameterTypes();
-              // the return type of the provider method is dependent on the parameters of the
-              // providers,
-              // thus, the paraType has higher priorities.
-              for (Type paraType : parameters) {
-                int p = priority + 1;
-                priorities.put(paraType, p);
-              }
-            }
-          }
+      Set<String> epMethodAnnotationSignatures) {
+    DetectedEntryPointClasses ret = new DetectedEntryPointClasses();
+    AnnotationIndex index = classHierarchy.getAnnotationIndex();
+    Map<String, String> epClassAnnotations = index.getMetaAnnotationRoots(epClassSignatures);
+    for (SootClass c : index.getAnnotatedClasses(epClassAnnotations.keySet())) {
+      for (String type : index.getAnnotations(c)) {
+        // custom stereotypes are mapped to the configured annotation they are annotated with
+        String root = epClassAnnotations.get(type);
+        if (root == null) continue;
+        SootClass rootClass = classHierarchy.getClass(root);
+        if (rootClass != null) {
+          ret.put(c, rootClass, aTag);
+          break;
         }
       }
     }
+    Set<String> epMethodAnnotations = index.getMetaAnnotationClosure(epMethodAnnotationSignatures);
+    for (SootMethod m : index.getAnnotatedMethods(epMethodAnnotations)) {
+      ret.addAnnotatedMethod(m);
+    }
+    return ret;
+  }
+
+  /**
+   * Resolve the classes returned by the provider methods annotated with one of the given annotation
+   * types. This must not be called concurrently with any detection.
+   *
+   * @param classHierarchy
+   * @param objectProviderAnnotationSignatures
+   */
+  default void resolveObjectProviderTypes(
+      Hierarchy classHierarchy, Set<String> objectProviderAnnotationSignatures) {
+    AnnotationIndex index = classHierarchy.getAnnotationIndex();
+    Set<String> objectProviderAnnotations =
+        index.getMetaAnnotationClosure(objectProviderAnnotationSignatures);
+    for (SootMethod m : index.getAnnotatedMethods(objectProviderAnnotations)) {
+      Scene.v().getSootClass(m.getReturnType().toString());
+    }
+  }
+
+  /**
+   * Get the provider methods annotated with one of the given annotation types, keyed by the class
+   * they return. Each call returns a new map, nothing is shared between detections. The returned
+   * classes are only looked up, they have to be resolved by {@link
+   * #resolveObjectProviderTypes(Hierarchy, Set)} before.
+   *
+   * @param classHierarchy
+   * @param objectProviderAnnotationSignatures
+   * @return
+   */
+  default Map<SootClass, Set<SootMethod>> getObjectProviders(
+      Hierarchy classHierarchy, Set<String> objectProviderAnnotationSignatures) {
+    Map<SootClass, Set<SootMethod>> ret = new LinkedHashMap<>();
+    AnnotationIndex index = classHierarchy.getAnnotationIndex();
+    Set<String> objectProviderAnnotations =
+        index.getMetaAnnotationClosure(objectProviderAnnotationSignatures);
+    for (SootMethod m : index.getAnnotatedMethods(objectProviderAnnotations)) {
+      String returnType = m.getReturnType().toString();
+      SootClass returnClass = Scene.v().getSootClassUnsafe(returnType, false);
+      ret.computeIfAbsent(returnClass, k -> new LinkedHashSet<>()).add(m);
+    }
     return ret;
   }
 }
@@ -0,0 +1,382 @@
+package averroes.gencg;
+
+import averroes.util.BytecodeUtils;
+import averroes.util.ClassNameMatcher;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import soot.FoundFile;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+import soot.SourceLocator;
+import soot.tagkit.AnnotationTag;
+import soot.tagkit.Host;
+import soot.tagkit.VisibilityAnnotationTag;
+
+/**
+ * An index of the annotations on application classes, methods and fields. It is built in one pass
+ * over the application classes, such that the detectors look up the classes, methods or fields
+ * annotated with a given annotation type instead of scanning the whole application.
+ *
+ * @author Linghui Luo
+ */
+public class AnnotationIndex {
+
+  private Map<String, String> descriptorToAnnotation;
+  private Map<Host, List<String>> hostToAnnotations;
+  private Map<Host, Integer> hostToOrder;
+  private Map<String, Set<SootClass>> annotationToClasses;
+  private Map<String, Set<SootMethod>> annotationToMethods;
+  private Map<String, Set<SootField>> annotationToFields;
+  private Map<String, List<String>> metaAnnotations;
+  private Map<Set<String>, Map<String, String>> metaAnnotationClosures;
+
+  private AnnotationIndex() {
+    descriptorToAnnotation = new HashMap<>();
+    hostToAnnotations = new HashMap<>();
+    hostToOrder = new HashMap<>();
+    annotationToClasses = new HashMap<>();
+    annotationToMethods = new HashMap<>();
+    annotationToFields = new HashMap<>();
+    metaAnnotations = new HashMap<>();
+    metaAnnotationClosures = new HashMap<>();
+  }
+
+  /**
+   * Build the index from the annotation tags Soot attached to the given classes and their members.
+   *
+   * @param classes
+   */
+  public AnnotationIndex(Collection<SootClass> classes) {
+    this();
+    for (SootClass c : classes) {
+      index(c, annotationToClasses);
+      for (SootMethod m : c.getMethods()) {
+        index(m, annotationToMethods);
+      }
+      for (SootField f : c.getFields()) {
+        index(f, annotationToFields);
+      }
+    }
+  }
+
+  /**
+   * Build the index from an annotation index file written by {@link AnnotationScanner}. Entries
+   * whose class, method or field cannot be found in the Soot scene are ignored.
+   *
+   * @param indexFile
+   * @throws IOException
+   */
+  public AnnotationIndex(File indexFile) throws IOException {
+    this();
+    try (BufferedReader reader =
+        Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] parts = line.split(" ");
+        SootClass c = Scene.v().getSootClassUnsafe(parts[1], false);
+        if (c == null) continue;
+        switch (parts[0]) {
+          case AnnotationScanner.CLASS_ENTRY:
+            add(c, parts[2], annotationToClasses);
+            break;
+          case AnnotationScanner.METHOD_ENTRY:
+            SootMethod m =
+                c.getMethodUnsafe(
+                    parts[2],
+                    BytecodeUtils.getParameterTypes(parts[3]),
+                    BytecodeUtils.getReturnType(parts[3]));
+            if (m != null) add(m, parts[4], annotationToMethods);
+            break;
+          case AnnotationScanner.FIELD_ENTRY:
+            SootField f = c.getFieldByNameUnsafe(parts[2]);
+            if (f != null) add(f, parts[3], annotationToFields);
+            break;
+          default:
+            break;
+        }
+      }
+    }
+  }
+
+  private <T extends Host> void index(T host, Map<String, Set<T>> annotationToHosts) {
+    VisibilityAnnotationTag tag = (VisibilityAnnotationTag) host.getTag("VisibilityAnnotationTag");
+    if (tag == null) return;
+    for (AnnotationTag t : tag.getAnnotations()) {
+      add(host, t.getType(), annotationToHosts);
+    }
+  }
+
+  private <T extends Host> void add(
+      T host, String descriptor, Map<String, Set<T>> annotationToHosts) {
+    String annotation = toAnnotationType(descriptor);
+    hostToAnnotations.computeIfAbsent(host, k -> new ArrayList<>()).add(annotation);
+    hostToOrder.putIfAbsent(host, hostToOrder.size());
+    annotationToHosts.computeIfAbsent(annotation, k -> new LinkedHashSet<>()).add(host);
+  }
+
+  /**
+   * Convert an annotation descriptor (e.g., Lorg/springframework/context/annotation/Bean;) to the
+   * annotation type name. Each descriptor is converted only once.
+   *
+   * @param descriptor
+   * @return
+   */
+  public String toAnnotationType(String descriptor) {
+    return descriptorToAnnotation.computeIfAbsent(
+        descriptor, d -> d.substring(1).replace("/", ".").replace(";", "").intern());
+  }
+
+  /**
+   * Get the annotation types of the given class, method or field in declaration order.
+   *
+   * @param host
+   * @return
+   */
+  public List<String> getAnnotations(Host host) {
+    return hostToAnnotations.getOrDefault(host, Collections.emptyList());
+  }
+
+  /**
+   * Get the classes annotated with any of the given annotation types, in the order they were
+   * indexed.
+   *
+   * @param annotations
+   * @return
+   */
+  public List<SootClass> getAnnotatedClasses(Set<String> annotations) {
+    return getAnnotated(annotationToClasses, annotations);
+  }
+
+  /**
+   * Get the methods annotated with any of the given annotation types, in the order they were
+   * indexed.
+   *
+   * @param annotations
+   * @return
+   */
+  public List<SootMethod> getAnnotatedMethods(Set<String> annotations) {
+    return getAnnotated(annotationToMethods, annotations);
+  }
+
+  /**
+   * Get the fields annotated with any of the given annotation types, in the order they were
+   * indexed.
+   *
+   * @param annotations
+   * @return
+   */
+  public List<SootField> getAnnotatedFields(Set<String> annotations) {
+    return getAnnotated(annotationToFields, annotations);
+  }
+
+  /**
+   * Get all the annotation types used by the indexed classes, methods and fields.
+   *
+   * @return
+   */
+  public Set<String> getAnnotationTypes() {
+    Set<String> ret = new HashSet<>(annotationToClasses.keySet());
+    ret.addAll(annotationToMethods.keySet());
+    ret.addAll(annotationToFields.keySet());
+    return ret;
+  }
+
+  /**
+   * Check if any class, method or field is annotated with one of the given annotation types.
+   *
+   * @param annotations
+   * @return
+   */
+  public boolean isUsed(Set<String> annotations) {
+    for (String annotation : annotations) {
+      if (annotationToClasses.containsKey(annotation)
+          || annotationToMethods.containsKey(annotation)
+          || annotationToFields.containsKey(annotation)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Get the given annotation types together with all annotation types that are, directly or
+   * transitively, annotated with one of them (e.g., a custom stereotype annotated with
+   * org.springframework.stereotype.Component). The closure is computed once per set of annotation
+   * types and cached.
+   *
+   * @param annotations
+   * @return
+   */
+  public Set<String> getMetaAnnotationClosure(Set<String> annotations) {
+    return getMetaAnnotationRoots(annotations).keySet();
+  }
+
+  /**
+   * Get the meta-annotation closure of the given annotation types, mapping each annotation type in
+   * the closure to the configured annotation type it was reached from. A configured annotation type
+   * maps to itself, a custom stereotype maps to the configured annotation type it is (transitively)
+   * annotated with.
+   *
+   * @param annotations
+   * @return
+   */
+  public synchronized Map<String, String> getMetaAnnotationRoots(Set<String> annotations) {
+    Map<String, String> roots = metaAnnotationClosures.get(annotations);
+    if (roots == null) {
+      roots = computeMetaAnnotationClosure(annotations);
+      metaAnnotationClosures.put(annotations, roots);
+    }
+    return roots;
+  }
+
+  /**
+   * Look up the meta-annotations of all annotation types used in the application, directly or
+   * transitively, and keep them in this index. The annotation tags of library classes are removed
+   * when the library classes are cleaned up, so this has to be done before then for stereotype
+   * chains through library annotation types (e.g., RestController annotated with Controller
+   * annotated with Component) to be resolved later on.
+   */
+  public synchronized void indexMetaAnnotations() {
+    getMetaAnnotationCandidates();
+  }
+
+  /**
+   * Get the annotation types used in the application and, transitively, their meta-annotations.
+   *
+   * @return
+   */
+  private Set<String> getMetaAnnotationCandidates() {
+    Set<String> candidates = new LinkedHashSet<>();
+    Deque<String> worklist = new ArrayDeque<>();
+    worklist.addAll(annotationToClasses.keySet());
+    worklist.addAll(annotationToMethods.keySet());
+    worklist.addAll(annotationToFields.keySet());
+    while (!worklist.isEmpty()) {
+      String annotation = worklist.poll();
+      if (candidates.add(annotation)) {
+        worklist.addAll(getMetaAnnotations(annotation));
+      }
+    }
+    return candidates;
+  }
+
+  private Map<String, String> computeMetaAnnotationClosure(Set<String> annotations) {
+    // collect the annotation types used in the application and their meta-annotations
+    Set<String> candidates = getMetaAnnotationCandidates();
+
+    // the configured annotation types may use package wildcards
+    ClassNameMatcher matcher = ClassNameMatcher.compile(annotations);
+    Map<String, String> closure = new LinkedHashMap<>();
+    for (String annotation : annotations) {
+      closure.put(annotation, annotation);
+    }
+    for (String annotation : candidates) {
+      if (matcher.matches(annotation)) closure.put(annotation, annotation);
+    }
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (String annotation : candidates) {
+        if (closure.containsKey(annotation)) continue;
+        for (String meta : getMetaAnnotations(annotation)) {
+          if (closure.containsKey(meta)) {
+            closure.put(annotation, closure.get(meta));
+            changed = true;
+            break;
+          }
+        }
+      }
+    }
+    return Collections.unmodifiableMap(closure);
+  }
+
+  /**
+   * Get the annotation types of the given annotation type. Application annotation types are looked
+   * up in this index, others are read from the annotation tags of the Soot class. Library
+   * annotation types that are only used in annotations are not resolved by Soot, so their
+   * annotation types are read from their class files on the Soot class path.
+   *
+   * @param annotation
+   * @return
+   */
+  private List<String> getMetaAnnotations(String annotation) {
+    List<String> ret = metaAnnotations.get(annotation);
+    if (ret != null) return ret;
+    ret = new ArrayList<>();
+    SootClass c = Scene.v().getSootClassUnsafe(annotation, false);
+    if (c != null && hostToAnnotations.containsKey(c)) {
+      ret.addAll(hostToAnnotations.get(c));
+    } else if (c != null && c.resolvingLevel() >= SootClass.HIERARCHY) {
+      VisibilityAnnotationTag tag = (VisibilityAnnotationTag) c.getTag("VisibilityAnnotationTag");
+      if (tag != null) {
+        for (AnnotationTag t : tag.getAnnotations()) {
+          ret.add(toAnnotationType(t.getType()));
+        }
+      }
+    } else {
+      ret.addAll(readMetaAnnotations(annotation));
+    }
+    metaAnnotations.put(annotation, ret);
+    return ret;
+  }
+
+  /**
+   * Read the runtime visible annotation types of the given annotation type from its class file.
+   *
+   * @param annotation
+   * @return
+   */
+  private List<String> readMetaAnnotations(String annotation) {
+    List<String> ret = new ArrayList<>();
+    FoundFile file = SourceLocator.v().lookupInClassPath(annotation.replace('.', '/') + ".class");
+    if (file == null) return ret;
+    try (InputStream in = file.inputStream()) {
+      new ClassReader(in)
+          .accept(
+              new ClassVisitor(Opcodes.ASM7) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                  if (visible) ret.add(toAnnotationType(descriptor));
+                  return null;
+                }
+              },
+              ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    } catch (IOException e) {
+      e.printStackTrace();
+    } finally {
+      file.close();
+    }
+    return ret;
+  }
+
+  private <T extends Host> List<T> getAnnotated(
+      Map<String, Set<T>> annotationToHosts, Set<String> annotations) {
+    Set<T> hosts = new HashSet<>();
+    for (String annotation : annotations) {
+      hosts.addAll(annotationToHosts.getOrDefault(annotation, Collections.emptySet()));
+    }
+    List<T> ret = new ArrayList<>(hosts);
+    ret.sort((h1, h2) -> hostToOrder.get(h1) - hostToOrder.get(h2));
+    return ret;
+  }
+}
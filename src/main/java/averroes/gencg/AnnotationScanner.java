@@ -0,0 +1,107 @@
+package averroes.gencg;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A lightweight scanner that reads the runtime visible annotations of classes, methods and fields
+ * directly from the class file bytes using ASM. Method bodies are skipped. The collected entries
+ * are written to an annotation index file that {@link AnnotationIndex} reads later on, such that
+ * the annotations are known before Soot loads the application classes.
+ *
+ * <p>Each line of the index file is one of:
+ *
+ * <ul>
+ *   <li>C className annotationDescriptor
+ *   <li>M className methodName methodDescriptor annotationDescriptor
+ *   <li>F className fieldName annotationDescriptor
+ * </ul>
+ *
+ * @author Linghui Luo
+ */
+public class AnnotationScanner {
+
+  public static final String CLASS_ENTRY = "C";
+  public static final String METHOD_ENTRY = "M";
+  public static final String FIELD_ENTRY = "F";
+
+  private List<String> entries;
+
+  public AnnotationScanner() {
+    entries = new ArrayList<>();
+  }
+
+  /**
+   * Scan the annotations of the given class file.
+   *
+   * @param classFile
+   */
+  public void scan(byte[] classFile) {
+    ClassReader reader = new ClassReader(classFile);
+    String className = reader.getClassName().replace('/', '.');
+    reader.accept(
+        new ClassVisitor(Opcodes.ASM7) {
+          @Override
+          public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            if (visible) add(CLASS_ENTRY, className, descriptor);
+            return null;
+          }
+
+          @Override
+          public MethodVisitor visitMethod(
+              int access, String name, String methodDescriptor, String signature, String[] ex) {
+            return new MethodVisitor(Opcodes.ASM7) {
+              @Override
+              public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                if (visible) add(METHOD_ENTRY, className, name, methodDescriptor, descriptor);
+                return null;
+              }
+            };
+          }
+
+          @Override
+          public FieldVisitor visitField(
+              int access, String name, String fieldDescriptor, String signature, Object value) {
+            return new FieldVisitor(Opcodes.ASM7) {
+              @Override
+              public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                if (visible) add(FIELD_ENTRY, className, name, descriptor);
+                return null;
+              }
+            };
+          }
+        },
+        ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+  }
+
+  private synchronized void add(String... parts) {
+    entries.add(String.join(" ", parts));
+  }
+
+  /**
+   * Write the scanned annotations to the given index file.
+   *
+   * @param indexFile
+   * @throws IOException
+   */
+  public synchronized void write(File indexFile) throws IOException {
+    try (BufferedWriter writer =
+        Files.newBufferedWriter(indexFile.toPath(), StandardCharsets.UTF_8)) {
+      for (String entry : entries) {
+        writer.write(entry);
+        writer.newLine();
+      }
+    }
+  }
+}
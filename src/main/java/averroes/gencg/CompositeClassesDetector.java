@@ -0,0 +1,89 @@
+package averroes.gencg;
+
+import averroes.ArchiveOrganizer;
+import averroes.soot.Hierarchy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+
+/**
+ * Combines the detectors of all applicable {@link DetectorProvider}s. The detectors run in parallel
+ * and their results are merged in the order the providers are registered.
+ *
+ * @author Linghui Luo
+ */
+public class CompositeClassesDetector implements ClassesDetector {
+
+  private static Logger logger = LoggerFactory.getLogger(CompositeClassesDetector.class);
+  private List<ClassesDetector> detectors;
+
+  public CompositeClassesDetector(List<ClassesDetector> detectors) {
+    this.detectors = detectors;
+  }
+
+  /**
+   * Load the registered detector providers and create the detectors of the applicable ones.
+   *
+   * @param classHierarchy
+   * @param reader
+   * @param organizer
+   * @return
+   */
+  public static CompositeClassesDetector load(
+      Hierarchy classHierarchy, EntryPointConfigurationReader reader, ArchiveOrganizer organizer) {
+    List<ClassesDetector> detectors = new ArrayList<>();
+    for (DetectorProvider provider : ServiceLoader.load(DetectorProvider.class)) {
+      if (provider.isApplicable(classHierarchy, reader, organizer)) {
+        logger.info("Applicable detector: " + provider.getClass().getSimpleName());
+        detectors.add(provider.createDetector(classHierarchy, reader, organizer));
+      }
+    }
+    return new CompositeClassesDetector(detectors);
+  }
+
+  @Override
+  public DetectedEntryPointClasses detectEntryPointClasses() {
+    DetectedEntryPointClasses ret = new DetectedEntryPointClasses();
+    detect(ClassesDetector::detectEntryPointClasses).forEach(ret::addAll);
+    return ret;
+  }
+
+  @Override
+  public Map<SootClass, Set<SootField>> getCreateObjects() {
+    Map<SootClass, Set<SootField>> ret = new LinkedHashMap<>();
+    detect(ClassesDetector::getCreateObjects).forEach(m -> merge(ret, m));
+    return ret;
+  }
+
+  @Override
+  public Map<SootClass, Set<SootMethod>> getObjectProviders() {
+    Map<SootClass, Set<SootMethod>> ret = new LinkedHashMap<>();
+    detect(ClassesDetector::getObjectProviders).forEach(m -> merge(ret, m));
+    return ret;
+  }
+
+  @Override
+  public void resolveObjectProviderTypes() {
+    // the Scene may be changed, so the detectors are not run in parallel here
+    detectors.forEach(ClassesDetector::resolveObjectProviderTypes);
+  }
+
+  private <T> List<T> detect(Function<ClassesDetector, T> detection) {
+    return detectors.parallelStream().map(detection).collect(Collectors.toList());
+  }
+
+  private <T> void merge(Map<SootClass, Set<T>> ret, Map<SootClass, Set<T>> result) {
+    result.forEach((c, s) -> ret.computeIfAbsent(c, k -> new LinkedHashSet<>()).addAll(s));
+  }
+}
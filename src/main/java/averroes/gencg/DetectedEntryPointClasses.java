@@ -0,0 +1,89 @@
+package averroes.gencg;
+
+import averroes.soot.Hierarchy;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import soot.SootClass;
+import soot.SootMethod;
+
+/**
+ * The entry point classes found by a detector, together with the changes the detection makes to
+ * shared state: the tag of each entry point class and the annotated application methods. Detecting
+ * only fills in this result, the changes are applied by {@link #apply(Hierarchy)} once all the
+ * detections have finished, such that the detections can run concurrently.
+ *
+ * @author Linghui Luo
+ */
+public class DetectedEntryPointClasses {
+
+  private Map<SootClass, SootClass> entryPointClasses;
+  private Map<SootClass, EntryPointTypeTag> tags;
+  private Set<SootMethod> annotatedMethods;
+
+  public DetectedEntryPointClasses() {
+    entryPointClasses = new LinkedHashMap<>();
+    tags = new LinkedHashMap<>();
+    annotatedMethods = new LinkedHashSet<>();
+  }
+
+  /**
+   * Add an application entry point class, the library entry point class it is mapped to and the tag
+   * to add to it. A class that is already detected keeps its library class and tag.
+   *
+   * @param c
+   * @param epClass
+   * @param tag
+   */
+  public void put(SootClass c, SootClass epClass, EntryPointTypeTag tag) {
+    if (entryPointClasses.putIfAbsent(c, epClass) == null) tags.put(c, tag);
+  }
+
+  public void addAnnotatedMethod(SootMethod m) {
+    annotatedMethods.add(m);
+  }
+
+  /**
+   * Add the results of another detection. The entry point classes already detected take precedence.
+   *
+   * @param other
+   */
+  public void addAll(DetectedEntryPointClasses other) {
+    other.entryPointClasses.forEach((c, epClass) -> put(c, epClass, other.tags.get(c)));
+    annotatedMethods.addAll(other.annotatedMethods);
+  }
+
+  /**
+   * Keep only the entry point classes that match the given condition.
+   *
+   * @param filter
+   */
+  public void retainClasses(Predicate<SootClass> filter) {
+    entryPointClasses.keySet().removeIf(c -> !filter.test(c));
+    tags.keySet().removeIf(c -> !filter.test(c));
+  }
+
+  /**
+   * @return a map with key to be the application entry point class and value to be the library
+   *     entry point class
+   */
+  public Map<SootClass, SootClass> getEntryPointClasses() {
+    return entryPointClasses;
+  }
+
+  /**
+   * Tag the entry point classes and register the annotated application methods in the given class
+   * hierarchy. This must not be called concurrently with any detection.
+   *
+   * @param classHierarchy
+   */
+  public void apply(Hierarchy classHierarchy) {
+    tags.forEach(
+        (c, tag) -> {
+          if (!c.hasTag(tag.getName())) c.addTag(tag);
+        });
+    annotatedMethods.forEach(classHierarchy::addAnnotatedApplicationMethods);
+  }
+}
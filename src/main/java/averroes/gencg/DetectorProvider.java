@@ -0,0 +1,38 @@
+package averroes.gencg;
+
+import averroes.ArchiveOrganizer;
+import averroes.soot.Hierarchy;
+
+/**
+ * A service provider for a framework specific {@link ClassesDetector}. The providers are registered
+ * in META-INF/services and loaded with {@link java.util.ServiceLoader}. A detector is only created,
+ * and run, if the cheap applicability probe of its provider succeeds.
+ *
+ * @author Linghui Luo
+ */
+public interface DetectorProvider {
+
+  /**
+   * A cheap check whether the detector applies to the input program, e.g., the program uses
+   * annotations of the framework.
+   *
+   * @param classHierarchy
+   * @param reader
+   * @param organizer the organizer of the input archives of this run, which holds what was read
+   *     while organizing them (e.g., the manifest of an apk)
+   * @return
+   */
+  public boolean isApplicable(
+      Hierarchy classHierarchy, EntryPointConfigurationReader reader, ArchiveOrganizer organizer);
+
+  /**
+   * Create the detector.
+   *
+   * @param classHierarchy
+   * @param reader
+   * @param organizer the organizer of the input archives of this run
+   * @return
+   */
+  public ClassesDetector createDetector(
+      Hierarchy classHierarchy, EntryPointConfigurationReader reader, ArchiveOrganizer organizer);
+}
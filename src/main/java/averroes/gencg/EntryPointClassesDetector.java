@@ -1,5 +1,6 @@
 package averroes.gencg;
 
+import averroes.soot.Hierarchy;
 import java.util.Map;
 import soot.SootClass;
 
@@ -7,8 +8,22 @@ import soot.SootClass;
 public interface EntryPointClassesDetector {
 
   /**
+   * Detect the entry point classes without changing any shared state, such that detections can run
+   * concurrently. The returned result has to be applied once all detections have finished.
+   *
+   * @return
+   */
+  public DetectedEntryPointClasses detectEntryPointClasses();
+
+  /**
+   * Detect the entry point classes and apply the result right away.
+   *
    * @return a map with key to be the application entry point class and value to be the library
    *     entry point class
    */
-  public Map<SootClass, SootClass> getEntryPointClasses();
+  default Map<SootClass, SootClass> getEntryPointClasses() {
+    DetectedEntryPointClasses detected = detectEntryPointClasses();
+    detected.apply(Hierarchy.v());
+    return detected.getEntryPointClasses();
+  }
 }
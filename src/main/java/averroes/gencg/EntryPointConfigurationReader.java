@@ -1,11 +1,13 @@
 package averroes.gencg;
 
 import averroes.options.AverroesOptions;
+import averroes.util.ClassNameMatcher;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
@@ -21,6 +23,7 @@ public class EntryPointConfigurationReader {
   private HashMap<String, Set<String>> entryPointMethods;
   private HashMap<String, Set<String>> createObjects;
   private HashMap<String, Set<String>> objectProviders;
+  private HashMap<String, ClassNameMatcher> entryPointClassMatchers;
 
   public EntryPointConfigurationReader() {
     String epClassPath = AverroesOptions.getEntryPointClasses();
@@ -31,6 +34,10 @@ public class EntryPointConfigurationReader {
     entryPointMethods = read(epMethodPath);
     createObjects = read(createObjectsPath);
     objectProviders = read(objectProvidersPath);
+    entryPointClassMatchers = new HashMap<>();
+    entryPointClasses.forEach(
+        (type, signatures) ->
+            entryPointClassMatchers.put(type, ClassNameMatcher.compile(signatures)));
   }
 
   private HashMap<String, Set<String>> read(String path) {
@@ -63,6 +70,18 @@ public class EntryPointConfigurationReader {
     return this.entryPointClasses.get(frameworkType);
   }
 
+  /**
+   * Get the entry point classes of the given framework compiled into a matcher. The entries may use
+   * the package wildcards pkg.* and pkg.**.
+   *
+   * @param frameworkType
+   * @return
+   */
+  public ClassNameMatcher getEntryPointClassMatcher(String frameworkType) {
+    return entryPointClassMatchers.getOrDefault(
+        frameworkType, ClassNameMatcher.compile(Collections.emptyList()));
+  }
+
   public Set<String> getEntryPointMethods(String frameworkType) {
     return this.entryPointMethods.get(frameworkType);
   }
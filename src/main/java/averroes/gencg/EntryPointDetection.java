@@ -0,0 +1,63 @@
+package averroes.gencg;
+
+import averroes.soot.Hierarchy;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+
+/**
+ * Runs the detection of entry point classes, objects to create and object providers of a detector
+ * concurrently. The classes returned by the object providers are resolved before, since resolving a
+ * class may change the Scene. The detections do not share any state, each one produces its own
+ * result, such that a detector can be used again in another run. The tags of the entry point
+ * classes and the annotated application methods are only added to the classes and the hierarchy
+ * after all detections joined.
+ *
+ * @author Linghui Luo
+ */
+public class EntryPointDetection {
+
+  private Map<SootClass, SootClass> entryPointClasses;
+  private Map<SootClass, Set<SootField>> createObjects;
+  private Map<SootClass, Set<SootMethod>> objectProviders;
+
+  public EntryPointDetection(ClassesDetector detector, Hierarchy classHierarchy) {
+    detector.resolveObjectProviderTypes();
+    CompletableFuture<DetectedEntryPointClasses> entryPointClassesFuture =
+        CompletableFuture.supplyAsync(detector::detectEntryPointClasses);
+    CompletableFuture<Map<SootClass, Set<SootField>>> createObjectsFuture =
+        CompletableFuture.supplyAsync(detector::getCreateObjects);
+    CompletableFuture<Map<SootClass, Set<SootMethod>>> objectProvidersFuture =
+        CompletableFuture.supplyAsync(detector::getObjectProviders);
+    DetectedEntryPointClasses detected = entryPointClassesFuture.join();
+    createObjects = createObjectsFuture.join();
+    objectProviders = objectProvidersFuture.join();
+    // the tags and annotated methods are only added once no detection is running anymore
+    detected.apply(classHierarchy);
+    entryPointClasses = detected.getEntryPointClasses();
+  }
+
+  /**
+   * @return a map with key to be the application entry point class and value to be the library
+   *     entry point class
+   */
+  public Map<SootClass, SootClass> getEntryPointClasses() {
+    return entryPointClasses;
+  }
+
+  /** @return a map with key to be the class contains the fields that needs to be initialized. */
+  public Map<SootClass, Set<SootField>> getCreateObjects() {
+    return createObjects;
+  }
+
+  /**
+   * @return a map with key to be the return type of provider methods, value to be the set of
+   *     provider methods
+   */
+  public Map<SootClass, Set<SootMethod>> getObjectProviders() {
+    return objectProviders;
+  }
+}
@@ -12,4 +12,10 @@ public interface ObjectProvidersDetector {
    *     provider methods
    */
   public Map<SootClass, Set<SootMethod>> getObjectProviders();
+
+  /**
+   * Resolve the classes returned by the provider methods in the Scene. Resolving a class may add a
+   * phantom class to the Scene, so this is called once before the detections run concurrently.
+   */
+  default void resolveObjectProviderTypes() {}
 }
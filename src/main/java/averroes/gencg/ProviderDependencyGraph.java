@@ -0,0 +1,97 @@
+package averroes.gencg;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import soot.RefType;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+
+/**
+ * The dependency graph between object (bean) providers. The type returned by a provider method
+ * depends on the types of its parameters, if those are provided as well. The provided types are
+ * sorted topologically, such that the objects a provider needs are created before the provider is
+ * called.
+ *
+ * @author Linghui Luo
+ */
+public class ProviderDependencyGraph {
+
+  private static Logger logger = LoggerFactory.getLogger(ProviderDependencyGraph.class);
+
+  private Map<SootClass, Set<SootMethod>> objectProviders;
+  private Map<SootClass, Set<SootClass>> dependents;
+  private Map<SootClass, Integer> inDegree;
+
+  /**
+   * Build the graph from the given providers, keyed by the type they return.
+   *
+   * @param objectProviders
+   */
+  public ProviderDependencyGraph(Map<SootClass, Set<SootMethod>> objectProviders) {
+    this.objectProviders = objectProviders;
+    dependents = new HashMap<>();
+    inDegree = new HashMap<>();
+    for (SootClass provided : objectProviders.keySet()) {
+      inDegree.putIfAbsent(provided, 0);
+      for (SootMethod provider : objectProviders.get(provided)) {
+        for (Type paraType : provider.getParameterTypes()) {
+          if (!(paraType instanceof RefType)) continue;
+          SootClass dependency = ((RefType) paraType).getSootClass();
+          if (!objectProviders.containsKey(dependency)) continue;
+          if (dependents.computeIfAbsent(dependency, k -> new LinkedHashSet<>()).add(provided)) {
+            inDegree.merge(provided, 1, Integer::sum);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the providers ordered such that each provided type comes after the provided types it
+   * depends on. Types on a dependency cycle are reported and appended in their original order.
+   *
+   * @return
+   */
+  public Map<SootClass, Set<SootMethod>> getProvidersInDependencyOrder() {
+    Map<SootClass, Integer> remaining = new HashMap<>(inDegree);
+    Deque<SootClass> worklist = new ArrayDeque<>();
+    for (SootClass provided : objectProviders.keySet()) {
+      if (remaining.get(provided) == 0) worklist.add(provided);
+    }
+
+    Map<SootClass, Set<SootMethod>> ret = new LinkedHashMap<>();
+    while (!worklist.isEmpty()) {
+      SootClass provided = worklist.poll();
+      ret.put(provided, objectProviders.get(provided));
+      for (SootClass dependent : dependents.getOrDefault(provided, Collections.emptySet())) {
+        if (remaining.merge(dependent, -1, Integer::sum) == 0) worklist.add(dependent);
+      }
+    }
+
+    if (ret.size() < objectProviders.size()) {
+      List<SootClass> cyclic = new ArrayList<>();
+      for (SootClass provided : objectProviders.keySet()) {
+        if (!ret.containsKey(provided)) {
+          cyclic.add(provided);
+          ret.put(provided, objectProviders.get(provided));
+        }
+      }
+      logger.warn(
+          "Detected cyclic provider dependencies, providers of these types are not ordered: "
+              + cyclic.stream().map(SootClass::getName).collect(Collectors.joining(", ")));
+    }
+    return ret;
+  }
+}
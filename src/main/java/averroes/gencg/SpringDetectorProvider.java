@@ -0,0 +1,41 @@
+package averroes.gencg;
+
+import averroes.ArchiveOrganizer;
+import averroes.FrameworkType;
+import averroes.options.AverroesOptions;
+import averroes.soot.Hierarchy;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Provides the annotation based detector for Spring and the dependency injection frameworks
+ * configured with it (e.g., JSR-330 and Guice). It applies if the framework type is Spring, or if
+ * the application uses any of the configured annotations.
+ *
+ * @author Linghui Luo
+ */
+public class SpringDetectorProvider implements DetectorProvider {
+
+  @Override
+  public boolean isApplicable(
+      Hierarchy classHierarchy, EntryPointConfigurationReader reader, ArchiveOrganizer organizer) {
+    if (FrameworkType.SPRING.equals(AverroesOptions.getFrameworkType())) return true;
+    if (AverroesOptions.isAndroidApk()) return false;
+    AnnotationIndex index = classHierarchy.getAnnotationIndex();
+    return isUsed(index, reader.getEntryPointClasses(FrameworkType.SPRING))
+        || isUsed(index, reader.getEntryPointMethods(FrameworkType.SPRING))
+        || isUsed(index, reader.getCreateObjects(FrameworkType.SPRING))
+        || isUsed(index, reader.getObjectProviders(FrameworkType.SPRING));
+  }
+
+  private boolean isUsed(AnnotationIndex index, Set<String> annotations) {
+    if (annotations == null) annotations = Collections.emptySet();
+    return index.isUsed(index.getMetaAnnotationClosure(annotations));
+  }
+
+  @Override
+  public ClassesDetector createDetector(
+      Hierarchy classHierarchy, EntryPointConfigurationReader reader, ArchiveOrganizer organizer) {
+    return new SpringEntryPointClassesDetector(classHierarchy, reader);
+  }
+}
@@ -2,12 +2,9 @@ package averroes.gencg;
 
 import averroes.FrameworkType;
 import averroes.soot.Hierarchy;
-import java.util.Comparator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import soot.SootClass;
@@ -36,14 +33,11 @@ public class SpringEntryPointClassesDetector
   }
 
   @Override
-  public Map<SootClass, SootClass> getEntryPointClasses() {
-    Map<SootClass, SootClass> epClasses =
-        getEntryPointClasses(
-            classHierarchy,
-            SPRING_ENTRYPOINT_CLASSES,
-            SPRING_ENTRYPOINT_METHODS,
-            SPRING_OBJECT_PROVIDERS);
-    for (SootClass c : epClasses.keySet()) {
+  public DetectedEntryPointClasses detectEntryPointClasses() {
+    DetectedEntryPointClasses epClasses =
+        detectEntryPointClasses(
+            classHierarchy, SPRING_ENTRYPOINT_CLASSES, SPRING_ENTRYPOINT_METHODS);
+    for (SootClass c : epClasses.getEntryPointClasses().keySet()) {
       logger.info("Detected entry point class: " + c.getName());
     }
     return epClasses;
@@ -65,21 +59,16 @@ public class SpringEntryPointClassesDetector
     return createObjects;
   }
 
+  @Override
+  public void resolveObjectProviderTypes() {
+    resolveObjectProviderTypes(classHierarchy, SPRING_OBJECT_PROVIDERS);
+  }
+
   @Override
   public Map<SootClass, Set<SootMethod>> getObjectProviders() {
-    // sort the providers according the priorities. A is dependent on B: B has higher priority than
-    // A.
-    SortedMap<SootClass, Set<SootMethod>> sortedObjectProviders =
-        new TreeMap<SootClass, Set<SootMethod>>(
-            new Comparator<SootClass>() {
-              @Override
-              public int compare(SootClass o1, SootClass o2) {
-                return priorities.get(o2.getType()) - priorities.get(o1.getType());
-              }
-            });
-    for (SootClass c : objectProviders.keySet()) {
-      sortedObjectProviders.put(c, objectProviders.get(c));
-    }
-    return sortedObjectProviders;
+    // sort the providers according to their dependencies. A is dependent on B: B comes before A.
+    Map<SootClass, Set<SootMethod>> objectProviders =
+        getObjectProviders(classHierarchy, SPRING_OBJECT_PROVIDERS);
+    return new ProviderDependencyGraph(objectProviders).getProvidersInDependencyOrder();
   }
 }
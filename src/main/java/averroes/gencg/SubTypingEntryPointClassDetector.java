@@ -2,10 +2,13 @@ package averroes.gencg;
 
 import averroes.options.AverroesOptions;
 import averroes.soot.Hierarchy;
-import java.util.HashMap;
-import java.util.LinkedHashSet;
-import java.util.Map;
+import averroes.util.ClassNameMatcher;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.Set;
+import java.util.stream.Collectors;
 import soot.SootClass;
 
 /** @author Linghui Luo */
@@ -13,28 +16,57 @@ public interface SubTypingEntryPointClassDetector extends ClassesDetector {
 
   public EntryPointTypeTag sTag = new EntryPointTypeTag(EntryPointTypeTag.SUBTYPING);
 
-  default Map<SootClass, SootClass> getEntryPointClasses(
-      Hierarchy classHierarchy, Set<String> classSignatures) {
-    Map<SootClass, SootClass> ret = new HashMap<>();
-    for (String androidClass : classSignatures) {
-      SootClass epClass = classHierarchy.getClass(androidClass);
-      if (epClass != null) {
-        LinkedHashSet<SootClass> entryPointClasses = classHierarchy.getSubclassesOf(epClass);
-        entryPointClasses.forEach(
-            c -> {
-              if (AverroesOptions.isLoadedApplicationClass(c.getName())) {
-                c.addTag(sTag);
-                if (ret.containsKey(c)) {
-                  if (classHierarchy.isSubclassOf(epClass, ret.get(c))) {
-                    ret.put(c, epClass);
-                  }
-                } else {
-                  ret.put(c, epClass);
-                }
-              }
-            });
-      }
-    }
+  /**
+   * Map each application class to its closest superclass that matches one of the configured entry
+   * point classes. Each superclass chain is walked once, instead of collecting the subclasses of
+   * every configured class. The matched classes are tagged once the result is applied.
+   *
+   * @param classHierarchy
+   * @param classMatcher
+   * @return
+   */
+  default DetectedEntryPointClasses detectEntryPointClasses(
+      Hierarchy classHierarchy, ClassNameMatcher classMatcher) {
+    DetectedEntryPointClasses ret = new DetectedEntryPointClasses();
+    // the application classes are matched in parallel, the matches are merged in class order
+    classHierarchy
+        .getApplicationClasses()
+        .parallelStream()
+        .filter(c -> AverroesOptions.isLoadedApplicationClass(c.getName()))
+        .map(
+            c ->
+                new SimpleImmutableEntry<>(
+                    c, getEntryPointSupertype(classHierarchy, c, classMatcher)))
+        .filter(e -> e.getValue() != null)
+        .collect(Collectors.toList())
+        .forEach(e -> ret.put(e.getKey(), e.getValue(), sTag));
     return ret;
   }
+
+  /**
+   * Get the closest superclass of the given class that matches one of the configured entry point
+   * classes. If there is none, the interfaces implemented by the class and its superclasses are
+   * checked (e.g., android.content.ServiceConnection).
+   *
+   * @param classHierarchy
+   * @param c
+   * @param classMatcher
+   * @return the matching supertype, or null if there is none
+   */
+  default SootClass getEntryPointSupertype(
+      Hierarchy classHierarchy, SootClass c, ClassNameMatcher classMatcher) {
+    for (SootClass superclass : classHierarchy.getSuperclassesOf(c)) {
+      if (classMatcher.matches(superclass.getName())) return superclass;
+    }
+    Deque<SootClass> worklist = new ArrayDeque<>(c.getInterfaces());
+    classHierarchy.getSuperclassesOf(c).forEach(s -> worklist.addAll(s.getInterfaces()));
+    Set<SootClass> visited = new HashSet<>();
+    while (!worklist.isEmpty()) {
+      SootClass iface = worklist.poll();
+      if (!visited.add(iface)) continue;
+      if (classMatcher.matches(iface.getName())) return iface;
+      worklist.addAll(iface.getInterfaces());
+    }
+    return null;
+  }
 }
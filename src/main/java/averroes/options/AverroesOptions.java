@@ -12,6 +12,7 @@
 package averroes.options;
 
 import averroes.FrameworkType;
+import averroes.util.ClassNameMatcher;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
@@ -19,9 +20,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
@@ -29,7 +30,6 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
-import probe.ObjectManager;
 import probe.ProbeClass;
 import soot.Scene;
 import soot.SootClass;
@@ -45,7 +45,15 @@ import soot.SootClass;
 public final class AverroesOptions {
 
   private static List<String> dynamicClasses = null;
-  private static Set<String> applicationClasses = new HashSet<>();
+
+  /*
+   * The application regex is compiled into a matcher that answers queries without locking or
+   * allocating, so its results are not cached. The loaded application classes are kept in a
+   * concurrent set. Both are reset whenever the arguments are processed.
+   */
+  private static Set<String> loadedApplicationClasses = ConcurrentHashMap.newKeySet();
+  private static ClassNameMatcher applicationClassMatcher =
+      ClassNameMatcher.compile(Collections.emptyList());
 
   private static Option applicationRegex =
       Option.builder("r")
@@ -107,7 +115,7 @@ public final class AverroesOptions {
       Option.builder("t")
           .longOpt("tamiflex-facts-file")
           .desc(
-              "a file that contains reflection facts generated for this application in the TamiFlex format")
+              "a file that contains reflection facts generated for this application in the TamiFlex format, or an index merged from several such files by averroes.tamiflex.TamiFlexFactsIndex")
           .hasArg()
           .argName("file")
           .required(false)
@@ -176,6 +184,79 @@ public final class AverroesOptions {
           .required(false)
           .build();
 
+  private static Option parallelBodies =
+      Option.builder("pb")
+          .longOpt("parallel-bodies")
+          .desc(
+              "setting this flag will make Averroes generate the bodies of the placeholder library methods in parallel.")
+          .hasArg(false)
+          .required(false)
+          .build();
+
+  private static Option streaming =
+      Option.builder("s")
+          .longOpt("streaming")
+          .desc(
+              "setting this flag will make Averroes release the generated bodies of each placeholder library class as soon as its class file is written. This bounds the memory used for large dependency closures.")
+          .hasArg(false)
+          .required(false)
+          .build();
+
+  private static Option opaqueGuards =
+      Option.builder("og")
+          .longOpt("opaque-guards")
+          .desc(
+              "setting this flag will make Averroes guard generated code by reading a single static guard field instead of calling Math.random() for every guard")
+          .hasArg(false)
+          .required(false)
+          .build();
+
+  private static Option compactDispatch =
+      Option.builder("cd")
+          .longOpt("compact-dispatch")
+          .desc(
+              "setting this flag will make Averroes merge the entry point objects in the generated main method into one local per supertype, such that each typed LPT field is written only once")
+          .hasArg(false)
+          .required(false)
+          .build();
+
+  private static Option parallelBeanRetrieval =
+      Option.builder("pr")
+          .longOpt("parallel-bean-retrieval")
+          .desc(
+              "setting this flag will make Averroes replace the bean retrievals of different application classes in parallel")
+          .hasArg(false)
+          .required(false)
+          .build();
+
+  private static Option annotationPrescan =
+      Option.builder("ap")
+          .longOpt("annotation-prescan")
+          .desc(
+              "setting this flag will make Averroes read the annotations of application classes from the class files while organizing the input archives")
+          .hasArg(false)
+          .required(false)
+          .build();
+
+  private static Option pruneLibrary =
+      Option.builder("pl")
+          .longOpt("prune-library")
+          .desc(
+              "setting this flag will make Averroes remove the library classes that are not reachable from the application before generating the placeholder library")
+          .hasArg(false)
+          .required(false)
+          .build();
+
+  private static Option basicClassesCache =
+      Option.builder("bc")
+          .longOpt("basic-classes-cache")
+          .desc(
+              "a directory where Averroes caches the basic classes required by Soot across runs (e.g., ~/.averroes/basic-classes). Without it, they are generated in every run")
+          .hasArg()
+          .argName("directory")
+          .required(false)
+          .build();
+
   private static Options options =
       new Options()
           .addOption(applicationRegex)
@@ -191,7 +272,15 @@ public final class AverroesOptions {
           .addOption(enableGuards)
           .addOption(configFiles)
           .addOption(noInstrumentation)
-          .addOption(includeJavaLibraryClass);
+          .addOption(includeJavaLibraryClass)
+          .addOption(parallelBodies)
+          .addOption(streaming)
+          .addOption(opaqueGuards)
+          .addOption(compactDispatch)
+          .addOption(parallelBeanRetrieval)
+          .addOption(annotationPrescan)
+          .addOption(pruneLibrary)
+          .addOption(basicClassesCache);
 
   private static CommandLine cmd;
 
@@ -203,6 +292,9 @@ public final class AverroesOptions {
   public static void processArguments(String[] args) {
     try {
       cmd = new DefaultParser().parse(options, args);
+      applicationClassMatcher = ClassNameMatcher.compile(getApplicationRegex());
+      loadedApplicationClasses.clear();
+      dynamicClasses = null;
 
       // Do we need to print out help messages?
       if (cmd.hasOption(help.getOpt())) {
@@ -366,29 +458,7 @@ public final class AverroesOptions {
    * @return
    */
   public static boolean isApplicationClass(ProbeClass probeClass) {
-    for (String entry : getApplicationRegex()) {
-      if (entry.endsWith(".*")) {
-        // 1. If the entry ends with .* then this means it's a package.
-        String pkg = entry.replace(".*", "");
-        if (probeClass.pkg().equalsIgnoreCase(pkg)) {
-          return true;
-        }
-      } else if (entry.endsWith(".**")) {
-        // 2. If the entry  * ends with .** then it's a super package.
-        String pkg = entry.replace("**", "");
-        if (probeClass.toString().startsWith(pkg)) {
-          return true;
-        }
-      } else if (entry.equalsIgnoreCase("**") && probeClass.pkg().isEmpty()) {
-        // 3. If the entry is **, then it's the default package.
-
-        return true;
-      } else if (entry.equalsIgnoreCase(probeClass.toString())) {
-        // 4. Otherwise, it's the full class name.
-        return true;
-      }
-    }
-    return false;
+    return applicationClassMatcher.matches(probeClass.toString());
   }
 
   /**
@@ -398,17 +468,17 @@ public final class AverroesOptions {
    * @return
    */
   public static boolean isApplicationClass(String className) {
-    if (AverroesOptions.useApplicationRegex())
-      return isApplicationClass(ObjectManager.v().getClass(className));
-    else return true;
+    if (AverroesOptions.useApplicationRegex()) {
+      return applicationClassMatcher.matches(className);
+    } else return true;
   }
 
   public static void loadApplicationClass(String className) {
-    applicationClasses.add(className);
+    loadedApplicationClasses.add(className);
   }
 
   public static boolean isLoadedApplicationClass(String className) {
-    return applicationClasses.contains(className);
+    return loadedApplicationClasses.contains(className);
   }
 
   /**
@@ -463,6 +533,15 @@ public final class AverroesOptions {
     }
   }
 
+  /**
+   * The matcher compiled from the {@link #applicationRegex} option.
+   *
+   * @return
+   */
+  public static ClassNameMatcher getApplicationClassMatcher() {
+    return applicationClassMatcher;
+  }
+
   public static boolean useApplicationRegex() {
     return cmd.hasOption(applicationRegex.getOpt());
   }
@@ -502,4 +581,92 @@ public final class AverroesOptions {
   public static boolean includeJavaLibraryClass() {
     return cmd.hasOption(includeJavaLibraryClass.getOpt());
   }
+
+  /**
+   * Setting this flag will make Averroes generate the bodies of the placeholder library methods in
+   * parallel.
+   *
+   * @return
+   */
+  public static boolean isParallelBodies() {
+    return cmd.hasOption(parallelBodies.getOpt());
+  }
+
+  /**
+   * Setting this flag will make Averroes release the generated bodies of each placeholder library
+   * class as soon as its class file is written.
+   *
+   * @return
+   */
+  public static boolean isStreaming() {
+    return cmd.hasOption(streaming.getOpt());
+  }
+
+  /**
+   * Setting this flag will make Averroes guard generated code by reading the static guard field of
+   * the abstract library class instead of calling Math.random() for every guard.
+   *
+   * @return
+   */
+  public static boolean isOpaqueGuards() {
+    return cmd.hasOption(opaqueGuards.getOpt());
+  }
+
+  /**
+   * Setting this flag will make Averroes merge the entry point objects in the generated main method
+   * into one local per supertype, such that each typed LPT field is written only once.
+   *
+   * @return
+   */
+  public static boolean isCompactDispatch() {
+    return cmd.hasOption(compactDispatch.getOpt());
+  }
+
+  /**
+   * Setting this flag will make Averroes replace the bean retrievals of different application
+   * classes in parallel.
+   *
+   * @return
+   */
+  public static boolean isParallelBeanRetrieval() {
+    return cmd.hasOption(parallelBeanRetrieval.getOpt());
+  }
+
+  /**
+   * Setting this flag will make Averroes read the annotations of application classes directly from
+   * the class files while organizing the input archives, instead of from the Soot annotation tags.
+   *
+   * @return
+   */
+  public static boolean isAnnotationPrescan() {
+    return cmd.hasOption(annotationPrescan.getOpt());
+  }
+
+  /**
+   * Setting this flag will make Averroes remove the library classes that are not reachable from the
+   * application before generating the placeholder library.
+   *
+   * @return
+   */
+  public static boolean isPruneLibrary() {
+    return cmd.hasOption(pruneLibrary.getOpt());
+  }
+
+  /**
+   * Check if the basic classes required by Soot are cached across runs.
+   *
+   * @return
+   */
+  public static boolean isBasicClassesCacheEnabled() {
+    return cmd.hasOption(basicClassesCache.getOpt());
+  }
+
+  /**
+   * Get the directory where the basic classes required by Soot are cached across runs.
+   *
+   * @return
+   */
+  public static String getBasicClassesCacheDirectory() {
+    return cmd.getOptionValue(basicClassesCache.getOpt(), "");
+  }
 }
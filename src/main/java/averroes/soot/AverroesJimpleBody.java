@@ -61,6 +61,7 @@ import soot.jimple.LongConstant;
 import soot.jimple.NopStmt;
 import soot.jimple.ReturnStmt;
 import soot.jimple.SpecialInvokeExpr;
+import soot.jimple.StaticFieldRef;
 import soot.jimple.Stmt;
 import soot.jimple.ThrowStmt;
 import soot.util.Chain;
@@ -1038,11 +1039,27 @@ public class AverroesJimpleBody {
   }
 
   /**
-   * insert an assignment which has undecidable value.
+   * insert an assignment which has undecidable value. If opaque guards are enabled, the value is
+   * read from the guard field of the abstract library class instead of calling Math.random().
    *
    * @param local
    */
   public void insertRandomAssignment() {
+    if (AverroesOptions.isOpaqueGuards()) {
+      StaticFieldRef guard =
+          Jimple.v().newStaticFieldRef(CodeGenerator.v().getAverroesGuardField().makeRef());
+      insertAssignmentStatement(generateNewGuard(), guard, false);
+    } else {
+      insertAssignmentStatement(generateNewGuard(), insertRandomCondition(), false);
+    }
+  }
+
+  /**
+   * Insert a call to Math.random() and return the comparison of its result to 0.5.
+   *
+   * @return
+   */
+  public CmpExpr insertRandomCondition() {
     SootClass randomClass = Scene.v().forceResolve("java.lang.Math", SootClass.BODIES);
 
     InvokeExpr invoke =
@@ -1050,8 +1067,7 @@ public class AverroesJimpleBody {
             .newStaticInvokeExpr(randomClass.getMethod("random", new ArrayList<>()).makeRef());
     Local local = this.newLocal(DoubleType.v());
     insertAssignmentStatement(local, invoke, false);
-    CmpExpr compare = Jimple.v().newCmpExpr(local, DoubleConstant.v(0.5));
-    insertAssignmentStatement(generateNewGuard(), compare, false);
+    return Jimple.v().newCmpExpr(local, DoubleConstant.v(0.5));
   }
 
   Deque<Local> guards = new ArrayDeque<Local>();
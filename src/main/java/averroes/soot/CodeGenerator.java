@@ -16,6 +16,7 @@ import averroes.gencg.EntryPointConfigurationReader;
 import averroes.gencg.EntryPointTypeTag;
 import averroes.gencg.SpringEntryPointMethodDetector;
 import averroes.options.AverroesOptions;
+import averroes.tamiflex.ReflectiveCallType;
 import averroes.tamiflex.TamiFlexFactsDatabase;
 import averroes.util.io.Paths;
 import java.io.File;
@@ -31,11 +32,14 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import soot.ArrayType;
 import soot.Body;
 import soot.BooleanType;
@@ -70,7 +74,6 @@ import soot.dava.internal.javaRep.DIntConstant;
 import soot.javaToJimple.DefaultLocalGenerator;
 import soot.jimple.AbstractStmtSwitch;
 import soot.jimple.AssignStmt;
-import soot.jimple.CmpExpr;
 import soot.jimple.DoubleConstant;
 import soot.jimple.EqExpr;
 import soot.jimple.FloatConstant;
@@ -98,6 +101,8 @@ import soot.options.Options;
  */
 public class CodeGenerator {
 
+  private static Logger logger = LoggerFactory.getLogger(CodeGenerator.class);
+
   private static CodeGenerator instance = new CodeGenerator();
 
   private HashMap<SootClass, SootClass> libraryInterfaceToConcreteImplementationClass;
@@ -114,6 +119,7 @@ public class CodeGenerator {
   private HashMap<SootClass, SootClass>
       instrumentedInterfaces; // (original class, its instrumented interface)
   private Map<SootClass, Set<SootMethod>> objectProviders = null;
+  private TamiFlexFactsDatabase tamiFlexFacts = null;
   public static Set<String> instrumentedClasses;
 
   /** Create a new code generator with the given class Cleanup.v(). */
@@ -123,7 +129,7 @@ public class CodeGenerator {
     instrumentedInterfaces = new HashMap<>();
     entryPointClasses = new HashMap<>();
     objectProviders = new HashMap<>();
-    instrumentedClasses = new HashSet<>();
+    instrumentedClasses = Collections.synchronizedSet(new HashSet<>());
     generatedMethodCount = 0;
     generatedClassCount = 0;
     initialize();
@@ -155,7 +161,7 @@ public class CodeGenerator {
     try {
       BafASMBackend backend = new BafASMBackend(cls, java_version);
       backend.generateClassFile(streamOut);
-
+      streamOut.close();
     } catch (Exception e) {
       streamOut.close();
       Files.deleteIfExists(file.toPath());
@@ -265,28 +271,7 @@ public class CodeGenerator {
    * @throws IOException
    */
   public void createAverroesLibraryClass() throws IOException {
-    // Create the abstract library class (specifically to be compatible with
-    // WALA/Java).
-    // This class represents the interface of the AverroesLibraryClass and
-    // will be part of the primordial library that is added to WALA.
-    if (averroesAbstractLibraryClass == null) {
-      // Create the class
-      averroesAbstractLibraryClass =
-          new SootClass(Names.AVERROES_ABSTRACT_LIBRARY_CLASS, Modifier.PUBLIC);
-      averroesAbstractLibraryClass.setSuperclass(Hierarchy.v().getJavaLangObject());
-
-      // Create the constructor that calls the JavaLangObject constructor
-      createAverroesAbstractLibraryInit();
-
-      // Create the LPT field, FIN field, instance field, and the Guard
-      createAverroesAbstractLibraryFields();
-
-      // Create the abstract doItAll method
-      createAverroesAbstractLibraryDoItAll();
-
-      // Write the class file to disk
-      writeClassFile(Paths.libraryClassesOutputDirectory().getPath(), averroesAbstractLibraryClass);
-    }
+    createAverroesAbstractLibraryClass();
 
     // Now create the AverroesLibraryClass which basically implements the
     // doItAll method and assigns itself to AbstractLibrary.instance
@@ -314,7 +299,41 @@ public class CodeGenerator {
     }
   }
 
-  public void createObjects(Map<SootClass, Set<SootField>> createObjects) {
+  /**
+   * Create the Averroes abstract library class, unless it has already been created.
+   *
+   * @throws IOException
+   */
+  private void createAverroesAbstractLibraryClass() throws IOException {
+    // Create the abstract library class (specifically to be compatible with
+    // WALA/Java).
+    // This class represents the interface of the AverroesLibraryClass and
+    // will be part of the primordial library that is added to WALA.
+    if (averroesAbstractLibraryClass == null) {
+      // Create the class
+      averroesAbstractLibraryClass =
+          new SootClass(Names.AVERROES_ABSTRACT_LIBRARY_CLASS, Modifier.PUBLIC);
+      averroesAbstractLibraryClass.setSuperclass(Hierarchy.v().getJavaLangObject());
+
+      // Create the constructor that calls the JavaLangObject constructor
+      createAverroesAbstractLibraryInit();
+
+      // Create the LPT field, FIN field, instance field, and the Guard
+      createAverroesAbstractLibraryFields();
+
+      // Create the abstract doItAll method
+      createAverroesAbstractLibraryDoItAll();
+
+      // Write the class file to disk
+      writeClassFile(Paths.libraryClassesOutputDirectory().getPath(), averroesAbstractLibraryClass);
+    }
+  }
+
+  public void createObjects(Map<SootClass, Set<SootField>> createObjects) throws IOException {
+    if (AverroesOptions.isOpaqueGuards()) {
+      // The object creation is guarded by the guard field of the abstract library class
+      createAverroesAbstractLibraryClass();
+    }
     for (Entry<SootClass, Set<SootField>> e : createObjects.entrySet()) {
       SootClass c = e.getKey();
       SootMethod defaultInit = c.getMethodUnsafe(Names.DEFAULT_CONSTRUCTOR_SUBSIG);
@@ -377,19 +396,24 @@ public class CodeGenerator {
                     boolean addPredicate) {
                   Unit nopStmt = Jimple.v().newNopStmt(); // placeholder for if target
                   if (addPredicate) {
-                    SootClass randomClass =
-                        Scene.v().forceResolve("java.lang.Math", SootClass.BODIES);
-                    InvokeExpr invoke =
-                        Jimple.v()
-                            .newStaticInvokeExpr(
-                                randomClass.getMethod("random", new ArrayList<>()).makeRef());
-                    Local v = Jimple.v().newLocal("v" + local.getName(), DoubleType.v());
-                    body.getLocals().add(v);
-                    units.insertBefore(Jimple.v().newAssignStmt(v, invoke), returnStmt);
-                    CmpExpr compare = Jimple.v().newCmpExpr(v, DoubleConstant.v(0.5));
+                    Value predicate;
+                    if (AverroesOptions.isOpaqueGuards()) {
+                      predicate = Jimple.v().newStaticFieldRef(getAverroesGuardField().makeRef());
+                    } else {
+                      SootClass randomClass =
+                          Scene.v().forceResolve("java.lang.Math", SootClass.BODIES);
+                      InvokeExpr invoke =
+                          Jimple.v()
+                              .newStaticInvokeExpr(
+                                  randomClass.getMethod("random", new ArrayList<>()).makeRef());
+                      Local v = Jimple.v().newLocal("v" + local.getName(), DoubleType.v());
+                      body.getLocals().add(v);
+                      units.insertBefore(Jimple.v().newAssignStmt(v, invoke), returnStmt);
+                      predicate = Jimple.v().newCmpExpr(v, DoubleConstant.v(0.5));
+                    }
                     Local p = Jimple.v().newLocal("p" + local.getName(), BooleanType.v());
                     body.getLocals().add(p);
-                    units.insertBefore(Jimple.v().newAssignStmt(p, compare), returnStmt);
+                    units.insertBefore(Jimple.v().newAssignStmt(p, predicate), returnStmt);
                     EqExpr cond = Jimple.v().newEqExpr(p, IntConstant.v(0));
                     units.insertBefore(Jimple.v().newIfStmt(cond, nopStmt), returnStmt);
                   }
@@ -470,8 +494,17 @@ public class CodeGenerator {
           }
         });
 
+    // in compact mode, objects are merged into one local per supertype and every typed LPT field
+    // is written once after all entry point classes have been initialized.
+    Map<SootClass, Local> mergedLocals = null;
+    if (AverroesOptions.isCompactDispatch()) {
+      mergedLocals = createMergedLocals(body, localGenerator, epClasses);
+    }
     for (SootClass klass : epClasses) {
-      initializeEntryPointClasses(body, ins, localForClasses, klass);
+      initializeEntryPointClasses(body, ins, localForClasses, mergedLocals, klass);
+    }
+    if (mergedLocals != null) {
+      storeMergedLocals(body, ins, mergedLocals);
     }
     createBeans(body, localGenerator, ins);
     callApplicationMainMethods(body);
@@ -598,10 +631,70 @@ public class CodeGenerator {
     }
   }
 
+  /**
+   * Create one local for each supertype of the given entry point classes and initialize it with
+   * null, such that it is defined on every path through the guards.
+   *
+   * @param body
+   * @param localGenerator
+   * @param epClasses
+   * @return
+   */
+  private Map<SootClass, Local> createMergedLocals(
+      AverroesJimpleBody body, LocalGenerator localGenerator, List<SootClass> epClasses) {
+    Map<SootClass, Local> mergedLocals = new LinkedHashMap<>();
+    for (SootClass klass : epClasses) {
+      for (SootClass parent : getEntryPointParents(klass)) {
+        if (!mergedLocals.containsKey(parent)) {
+          Local local = localGenerator.generateLocal(parent.getType());
+          addUnit(body.getJimpleBody(), Jimple.v().newAssignStmt(local, NullConstant.v()));
+          mergedLocals.put(parent, local);
+        }
+      }
+    }
+    return mergedLocals;
+  }
+
+  /**
+   * Store each merged local to the typed LPT field of its supertype.
+   *
+   * @param body
+   * @param ins
+   * @param mergedLocals
+   */
+  private void storeMergedLocals(
+      AverroesJimpleBody body, Local ins, Map<SootClass, Local> mergedLocals) {
+    for (Entry<SootClass, Local> e : mergedLocals.entrySet()) {
+      SootField typedLPT =
+          CodeGenerator.v().createAverroesTypedLibraryPointsToField(e.getKey().getType());
+      addUnit(
+          body.getJimpleBody(),
+          Jimple.v()
+              .newAssignStmt(
+                  Jimple.v().newInstanceFieldRef(ins, typedLPT.makeRef()), e.getValue()));
+    }
+  }
+
+  /**
+   * Get the supertypes of the given entry point class whose typed LPT fields should point to it.
+   *
+   * @param klass
+   * @return
+   */
+  private Set<SootClass> getEntryPointParents(SootClass klass) {
+    Set<SootClass> parents = new HashSet<>();
+    parents.add(entryPointClasses.get(klass));
+    parents.addAll(Hierarchy.v().getSuperclassesOf(klass));
+    parents.addAll(Hierarchy.v().getSuperinterfacesOf(klass));
+    parents.removeIf(parent -> parent.getName().equals(Names.JAVA_LANG_OBJECT));
+    return parents;
+  }
+
   private void initializeEntryPointClasses(
       AverroesJimpleBody body,
       Local ins,
       HashMap<SootClass, Local> localForClasses,
+      Map<SootClass, Local> mergedLocals,
       SootClass klass) {
     body.insertRandomAssignment();
     NopStmt ifStmt = body.insertGuardCondition();
@@ -617,6 +710,7 @@ public class CodeGenerator {
         Jimple.v()
             .newAssignStmt(localForClasses.get(klass), Jimple.v().newNewExpr(klass.getType())));
 
+    boolean constructed = false;
     for (SootMethod method : klass.getMethods()) {
       if (method.getName().equals(SootMethod.constructorName)) {
         SootMethod construtor = method;
@@ -647,13 +741,9 @@ public class CodeGenerator {
                     Jimple.v()
                         .newSpecialInvokeExpr(localForClasses.get(klass), constructorRef, args)));
         Local classLocal = localForClasses.get(klass);
-        Set<SootClass> parents = new HashSet<>();
-        parents.add(entryPointClasses.get(klass));
-        parents.addAll(Hierarchy.v().getSuperclassesOf(klass));
-        parents.addAll(Hierarchy.v().getSuperinterfacesOf(klass));
-        for (SootClass parent : parents) {
-          if (parent.getName().equals(Names.JAVA_LANG_OBJECT)) continue;
-
+        constructed = true;
+        if (mergedLocals != null) continue;
+        for (SootClass parent : getEntryPointParents(klass)) {
           SootField typedLPT =
               CodeGenerator.v().createAverroesTypedLibraryPointsToField(parent.getType());
           AssignStmt storeStmt =
@@ -664,6 +754,13 @@ public class CodeGenerator {
         }
       }
     }
+    if (mergedLocals != null && constructed) {
+      for (SootClass parent : getEntryPointParents(klass)) {
+        addUnit(
+            body.getJimpleBody(),
+            Jimple.v().newAssignStmt(mergedLocals.get(parent), localForClasses.get(klass)));
+      }
+    }
     body.insertStmt(ifStmt);
   }
 
@@ -737,6 +834,11 @@ public class CodeGenerator {
    * @throws IOException
    */
   public void createLibraryMethodBodies() throws IOException {
+    if (AverroesOptions.isParallelBodies()) {
+      createLibraryMethodBodiesInParallel();
+      return;
+    }
+
     for (SootClass libraryClass : getLibraryClasses()) {
       for (SootMethod method : libraryClass.getMethods()) {
         // Create our Jimple body for concrete methods only
@@ -745,16 +847,138 @@ public class CodeGenerator {
           method.setPhantom(false);
         }
       }
-      if (AverroesOptions.includeJavaLibraryClass()) {
-        writeClassFile(Paths.libraryClassesOutputDirectory().getPath(), libraryClass);
-      } else {
-        if (!libraryClass.isJavaLibraryClass()) { // ingore java classes from rt.jar
-          writeClassFile(Paths.libraryClassesOutputDirectory().getPath(), libraryClass);
+      writeLibraryClassFile(libraryClass);
+      releaseLibraryMethodBodies(libraryClass);
+    }
+  }
+
+  /**
+   * Create the bodies of library methods concurrently. This is done in three phases. First, all the
+   * typed LPT fields the bodies refer to are created sequentially, such that the concurrent phase
+   * never adds fields to the AbstractLibrary class. Second, the bodies are built in parallel. Each
+   * body uses its own local variable numberer, so nothing else is shared between methods. Finally,
+   * the bodies are cleaned up, validated and written class by class. In streaming mode, the bodies
+   * of one class are built, written and released before moving on to the next class.
+   *
+   * @throws IOException
+   */
+  private void createLibraryMethodBodiesInParallel() throws IOException {
+    Map<SootClass, List<SootMethod>> concreteMethods = new LinkedHashMap<>();
+    for (SootClass libraryClass : getLibraryClasses()) {
+      List<SootMethod> methods = new ArrayList<>();
+      for (SootMethod method : libraryClass.getMethods()) {
+        if (method.isConcrete()) {
+          createAverroesTypedLibraryPointsToFieldsFor(method);
+          methods.add(method);
+        }
+      }
+      concreteMethods.put(libraryClass, methods);
+    }
+
+    if (AverroesOptions.isStreaming()) {
+      for (Entry<SootClass, List<SootMethod>> entry : concreteMethods.entrySet()) {
+        entry.getValue().parallelStream().forEach(this::createBasicJimpleBody);
+        finishLibraryMethodBodies(entry.getKey(), entry.getValue());
+      }
+    } else {
+      concreteMethods
+          .values()
+          .parallelStream()
+          .flatMap(List::stream)
+          .forEach(this::createBasicJimpleBody);
+      for (Entry<SootClass, List<SootMethod>> entry : concreteMethods.entrySet()) {
+        finishLibraryMethodBodies(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Eliminate nops from and validate the generated bodies of the given library class, then write
+   * its class file.
+   *
+   * @param libraryClass
+   * @param methods
+   * @throws IOException
+   */
+  private void finishLibraryMethodBodies(SootClass libraryClass, List<SootMethod> methods)
+      throws IOException {
+    for (SootMethod method : methods) {
+      JimpleBody body = (JimpleBody) method.getActiveBody();
+      NopEliminator.v().transform(body);
+      body.validate();
+      method.setPhantom(false);
+    }
+    writeLibraryClassFile(libraryClass);
+    releaseLibraryMethodBodies(libraryClass);
+  }
+
+  /**
+   * Release the active bodies of the given library class in streaming mode. This is only safe once
+   * the class file has been written. The methods themselves are kept, because the rest of the model
+   * still refers to their signatures.
+   *
+   * @param libraryClass
+   */
+  private void releaseLibraryMethodBodies(SootClass libraryClass) {
+    if (AverroesOptions.isStreaming()) {
+      for (SootMethod method : libraryClass.getMethods()) {
+        if (method.hasActiveBody()) {
+          method.releaseActiveBody();
         }
       }
     }
   }
 
+  /**
+   * Create all the typed LPT fields that the Jimple body of the given library method will refer to.
+   * This also resolves the class of the return type and the direct superclass of constructors, such
+   * that building the body afterwards only reads shared state.
+   *
+   * @param method
+   */
+  private void createAverroesTypedLibraryPointsToFieldsFor(SootMethod method) {
+    Set<Type> types = new HashSet<>(method.getParameterTypes());
+    types.add(method.getReturnType());
+    if (!method.isStatic()) {
+      types.add(method.getDeclaringClass().getType());
+    }
+    if (method.isConstructor() || method.isStaticInitializer()) {
+      for (SootField field : method.getDeclaringClass().getFields()) {
+        types.add(field.getType());
+      }
+    }
+
+    for (Type type : types) {
+      if (type instanceof RefLikeType) {
+        createAverroesTypedLibraryPointsToField((RefLikeType) type);
+      }
+    }
+
+    if (method.getReturnType() instanceof RefLikeType) {
+      Scene.v().getSootClassUnsafe(method.getReturnType().toString());
+    }
+    if (method.isConstructor()) {
+      Hierarchy.v().getDirectSuperclassOf(method.getDeclaringClass());
+    }
+  }
+
+  /**
+   * Write the class file of the given library class to the library classes output directory.
+   * Classes from the Java runtime are only written if they should be included in the model.
+   *
+   * @param libraryClass
+   * @throws IOException
+   */
+  private void writeLibraryClassFile(SootClass libraryClass) throws IOException {
+    if (AverroesOptions.includeJavaLibraryClass()) {
+      writeClassFile(Paths.libraryClassesOutputDirectory().getPath(), libraryClass);
+    } else {
+      if (!libraryClass.isJavaLibraryClass()) { // ingore java classes from rt.jar
+        writeClassFile(Paths.libraryClassesOutputDirectory().getPath(), libraryClass);
+      }
+    }
+  }
+
   /**
    * Create the Jimple body for the given library method. If it's a constructor, then we need to
    * initialize all the fields in the class with objects compatible from the LPT. If it's the static
@@ -765,6 +989,24 @@ public class CodeGenerator {
    * @return
    */
   private JimpleBody createJimpleBody(SootMethod method) {
+    AverroesJimpleBody body = createBasicJimpleBody(method);
+
+    // Eliminate Nops
+    NopEliminator.v().transform(body.getJimpleBody());
+
+    // Validate the Jimple body
+    body.validate();
+
+    return (JimpleBody) method.getActiveBody();
+  }
+
+  /**
+   * Create the Jimple body for the given library method without eliminating nops or validating it.
+   *
+   * @param method
+   * @return
+   */
+  private AverroesJimpleBody createBasicJimpleBody(SootMethod method) {
     if (method.getDeclaringClass().getName().equals(Names.AVERROES_ABSTRACT_LIBRARY_CLASS)
         || method.getDeclaringClass().getName().equals(Names.AVERROES_LIBRARY_CLASS)) {
       throw new IllegalArgumentException(
@@ -789,13 +1031,7 @@ public class CodeGenerator {
     // Insert the standard Jimple body footer
     body.insertStandardJimpleBodyFooter();
 
-    // Eliminate Nops
-    NopEliminator.v().transform(body.getJimpleBody());
-
-    // Validate the Jimple body
-    body.validate();
-
-    return (JimpleBody) method.getActiveBody();
+    return body;
   }
 
   /**
@@ -893,9 +1129,16 @@ public class CodeGenerator {
         Names.INSTANCE,
         averroesAbstractLibraryClass.getType(),
         Modifier.PUBLIC | Modifier.STATIC);
+    if (AverroesOptions.isOpaqueGuards()) {
+      createField(
+          averroesAbstractLibraryClass,
+          Names.GUARD_FIELD_NAME,
+          BooleanType.v(),
+          Modifier.PUBLIC | Modifier.STATIC);
+    }
   }
 
-  protected SootField createAverroesTypedLibraryPointsToField(RefLikeType fieldType) {
+  protected synchronized SootField createAverroesTypedLibraryPointsToField(RefLikeType fieldType) {
     return createField(
         averroesAbstractLibraryClass,
         Names.getTypedLibraryPointsToName(fieldType),
@@ -966,6 +1209,13 @@ public class CodeGenerator {
     // Now assign this instance to AverroesAbstractLibrary.instance
     body.storeStaticField(CodeGenerator.v().getAverroesInstanceField(), instance, true);
 
+    // Initialize the guard field once, all the other guards in the generated code read it
+    if (AverroesOptions.isOpaqueGuards()) {
+      Local guard = body.newLocal(BooleanType.v());
+      body.insertAssignmentStatement(guard, body.insertRandomCondition(), false);
+      body.storeStaticField(getAverroesGuardField(), guard, true);
+    }
+
     // Add return statement
     body.insertReturnStmt();
 
@@ -1367,20 +1617,32 @@ public class CodeGenerator {
   }
 
   /**
-   * Find all the application methods that TamiFlex found out they could be called reflectively.
+   * Get the TamiFlex facts of this run. They are loaded on the first call. If TamiFlex is not
+   * enabled, or the facts file cannot be read, there are no facts.
    *
    * @return
    */
-  private Set<SootMethod> getTamiFlexApplicationMethodInvokes() {
-    Set<SootMethod> result = new HashSet<SootMethod>();
-
-    for (String methodSignature : TamiFlexFactsDatabase.getMethodInvoke()) {
-      if (Hierarchy.v().isApplicationMethod(methodSignature)) {
-        result.add(Hierarchy.v().getMethod(methodSignature));
+  private TamiFlexFactsDatabase getTamiFlexFacts() {
+    if (tamiFlexFacts == null) {
+      tamiFlexFacts = TamiFlexFactsDatabase.empty();
+      if (AverroesOptions.isTamiflexEnabled()) {
+        try {
+          tamiFlexFacts = TamiFlexFactsDatabase.load(AverroesOptions.getTamiflexFactsFile());
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
       }
     }
+    return tamiFlexFacts;
+  }
 
-    return result;
+  /**
+   * Find all the application methods that TamiFlex found out they could be called reflectively.
+   *
+   * @return
+   */
+  private Set<SootMethod> getTamiFlexApplicationMethodInvokes() {
+    return getTamiFlexFacts().getApplicationMethods(ReflectiveCallType.METHOD_INVOKE);
   }
 
   /**
@@ -1389,15 +1651,7 @@ public class CodeGenerator {
    * @return
    */
   private Set<SootClass> getTamiFlexApplicationClassForName() {
-    Set<SootClass> result = new HashSet<SootClass>();
-
-    for (String className : TamiFlexFactsDatabase.getClassForName()) {
-      if (Hierarchy.v().isApplicationClass(className)) {
-        result.add(Hierarchy.v().getClass(className));
-      }
-    }
-
-    return result;
+    return getTamiFlexFacts().getApplicationClasses(ReflectiveCallType.CLASS_FOR_NAME);
   }
 
   /**
@@ -1406,16 +1660,7 @@ public class CodeGenerator {
    * @return
    */
   private Set<ArrayType> getTamiFlexApplicationArrayNewInstance() {
-    Set<ArrayType> result = new HashSet<ArrayType>();
-
-    for (String arrayType : TamiFlexFactsDatabase.getArrayNewInstance()) {
-      String baseType = Hierarchy.getBaseType(arrayType);
-      if (Hierarchy.v().isApplicationClass(baseType)) {
-        result.add(Hierarchy.v().getArrayType(arrayType));
-      }
-    }
-
-    return result;
+    return getTamiFlexFacts().getApplicationArrayTypes();
   }
 
   /**
@@ -1424,15 +1669,7 @@ public class CodeGenerator {
    * @return
    */
   private Set<SootClass> getTamiFlexApplicationClassNewInstance() {
-    Set<SootClass> result = new HashSet<SootClass>();
-
-    for (String className : TamiFlexFactsDatabase.getClassNewInstance()) {
-      if (Hierarchy.v().isApplicationClass(className)) {
-        result.add(Hierarchy.v().getClass(className));
-      }
-    }
-
-    return result;
+    return getTamiFlexFacts().getApplicationClasses(ReflectiveCallType.CLASS_NEWINSTANCE);
   }
 
   /**
@@ -1442,15 +1679,7 @@ public class CodeGenerator {
    * @return
    */
   private Set<SootMethod> getTamiFlexApplicationConstructorNewInstance() {
-    Set<SootMethod> result = new HashSet<SootMethod>();
-
-    for (String methodSignature : TamiFlexFactsDatabase.getConstructorNewInstance()) {
-      if (Hierarchy.v().isApplicationMethod(methodSignature)) {
-        result.add(Hierarchy.v().getMethod(methodSignature));
-      }
-    }
-
-    return result;
+    return getTamiFlexFacts().getApplicationMethods(ReflectiveCallType.CONSTRUCTOR_NEWINSTANCE);
   }
 
   /**
@@ -1690,73 +1919,126 @@ public class CodeGenerator {
     if (toRemove != null) units.remove(toRemove);
   }
 
+  /**
+   * Replace the retrieval of beans (e.g., getBean) in application classes with loads from the typed
+   * LPT fields. Only the classes whose constant pool references a bean retrieval method are
+   * visited. The bean retrievals are found, and the typed LPT fields they are replaced with are
+   * created, before any class is instrumented. Instrumenting a class then only modifies the bodies
+   * of its own methods, such that different classes can be instrumented in parallel.
+   */
   public void replaceBeanRetrieval() {
+    Set<SootClass> beanRetrievalClasses =
+        Hierarchy.v().getApplicationConstantPool().getBeanRetrievalClasses();
+    Map<SootClass, List<BeanRetrieval>> classToBeanRetrievals = new LinkedHashMap<>();
     for (SootClass cl : Scene.v().getApplicationClasses()) {
-      for (SootMethod m : cl.getMethods()) {
-        if (!m.hasActiveBody()) continue;
-        UnitPatchingChain units = m.getActiveBody().getUnits();
-        Iterator<Unit> iter = units.snapshotIterator();
-        while (iter.hasNext()) {
-          Unit unit = iter.next();
-          unit.apply(
-              new AbstractStmtSwitch() {
-                public void caseAssignStmt(AssignStmt stmt) {
-                  if (stmt.containsInvokeExpr() && isBeanRetrieval(stmt)) {
-                    units.remove(stmt);
-                    Unit nextUnit;
-                    if (iter.hasNext()) {
-                      nextUnit = iter.next();
-                      nextUnit.apply(
-                          new AbstractStmtSwitch() {
-                            public void caseAssignStmt(AssignStmt s) {
-                              Value left = s.getLeftOp();
-                              if (left.getType() instanceof RefLikeType) {
-                                SootField instance = CodeGenerator.v().getAverroesInstanceField();
-                                Value field = Jimple.v().newStaticFieldRef(instance.makeRef());
-                                Local local =
-                                    soot.jimple.Jimple.v()
-                                        .newLocal("averroesLib", instance.getType());
-                                m.getActiveBody().getLocals().add(local);
-                                List<Unit> toInsert = new ArrayList();
-                                toInsert.add(Jimple.v().newAssignStmt(local, field));
-                                RefLikeType leftType = (RefLikeType) left.getType();
-                                SootClass cls = Scene.v().getSootClassUnsafe(leftType.toString());
-                                if (cls != null) {
-                                  SootClass iface = instrumentedInterfaces.get(cls);
-                                  if (iface == null) iface = cls;
-                                  InstanceFieldRef right =
-                                      Jimple.v()
-                                          .newInstanceFieldRef(
-                                              local,
-                                              CodeGenerator.v()
-                                                  .createAverroesTypedLibraryPointsToField(
-                                                      (RefLikeType) iface.getType())
-                                                  .makeRef());
-                                  Local temp =
-                                      soot.jimple.Jimple.v().newLocal("temp", right.getType());
-                                  m.getActiveBody().getLocals().add(temp);
-                                  toInsert.add(Jimple.v().newAssignStmt(temp, right));
-                                  toInsert.add(Jimple.v().newAssignStmt(left, temp));
-                                  units.insertBefore(toInsert, s);
-                                }
-                                units.remove(s);
-                                instrumentedClasses.add(cl.getName());
-                                System.out.println("Instrumenting " + cl.getName());
-                              }
-                            }
-                          });
-                    }
-                  }
-                }
+      if (!beanRetrievalClasses.contains(cl)) continue;
+      List<BeanRetrieval> retrievals = findBeanRetrievals(cl);
+      if (!retrievals.isEmpty()) classToBeanRetrievals.put(cl, retrievals);
+    }
 
-                private boolean isBeanRetrieval(AssignStmt stmt) {
-                  String name = stmt.getInvokeExpr().getMethodRef().getName();
-                  return name.equals("getBean") || name.equals("getInstance");
-                }
-              });
+    SootField instance = getAverroesInstanceField();
+    if (AverroesOptions.isParallelBeanRetrieval()) {
+      classToBeanRetrievals
+          .entrySet()
+          .parallelStream()
+          .forEach(e -> replaceBeanRetrieval(e.getKey(), e.getValue(), instance));
+    } else {
+      classToBeanRetrievals.forEach(
+          (cl, retrievals) -> replaceBeanRetrieval(cl, retrievals, instance));
+    }
+  }
+
+  /**
+   * Find the bean retrievals in the methods of the given application class. The retrieved bean is
+   * assigned to a local of the bean type by the statement that follows the retrieval. The typed LPT
+   * field of that type is created if it does not exist yet.
+   *
+   * @param cl
+   * @return
+   */
+  private List<BeanRetrieval> findBeanRetrievals(SootClass cl) {
+    List<BeanRetrieval> retrievals = new ArrayList<>();
+    for (SootMethod m : cl.getMethods()) {
+      if (!m.hasActiveBody()) continue;
+      Iterator<Unit> iter = m.getActiveBody().getUnits().iterator();
+      while (iter.hasNext()) {
+        Unit unit = iter.next();
+        if (!isBeanRetrieval(unit)) continue;
+        BeanRetrieval retrieval = new BeanRetrieval(m, (AssignStmt) unit);
+        retrievals.add(retrieval);
+        if (!iter.hasNext()) continue;
+        Unit nextUnit = iter.next();
+        if (nextUnit instanceof AssignStmt
+            && ((AssignStmt) nextUnit).getLeftOp().getType() instanceof RefLikeType) {
+          retrieval.assignment = (AssignStmt) nextUnit;
+          RefLikeType leftType = (RefLikeType) retrieval.assignment.getLeftOp().getType();
+          SootClass cls = Scene.v().getSootClassUnsafe(leftType.toString());
+          if (cls != null) {
+            SootClass iface = instrumentedInterfaces.get(cls);
+            if (iface == null) iface = cls;
+            retrieval.typedField =
+                createAverroesTypedLibraryPointsToField((RefLikeType) iface.getType());
+          }
         }
       }
     }
+    return retrievals;
+  }
+
+  private static boolean isBeanRetrieval(Unit unit) {
+    if (!(unit instanceof AssignStmt)) return false;
+    AssignStmt stmt = (AssignStmt) unit;
+    return stmt.containsInvokeExpr()
+        && Names.isBeanRetrievalMethodName(stmt.getInvokeExpr().getMethodRef().getName());
+  }
+
+  /**
+   * Replace the given bean retrievals in the given application class. This only modifies the bodies
+   * of the methods of the given class, so different classes can be processed concurrently.
+   *
+   * @param cl
+   * @param retrievals
+   * @param instance
+   */
+  private void replaceBeanRetrieval(
+      SootClass cl, List<BeanRetrieval> retrievals, SootField instance) {
+    for (BeanRetrieval retrieval : retrievals) {
+      Body body = retrieval.method.getActiveBody();
+      UnitPatchingChain units = body.getUnits();
+      units.remove(retrieval.retrieval);
+      if (retrieval.assignment == null) continue;
+
+      if (retrieval.typedField != null) {
+        List<Unit> toInsert = new ArrayList<>();
+        Local local = Jimple.v().newLocal("averroesLib", instance.getType());
+        body.getLocals().add(local);
+        toInsert.add(
+            Jimple.v().newAssignStmt(local, Jimple.v().newStaticFieldRef(instance.makeRef())));
+        InstanceFieldRef right =
+            Jimple.v().newInstanceFieldRef(local, retrieval.typedField.makeRef());
+        Local temp = Jimple.v().newLocal("temp", right.getType());
+        body.getLocals().add(temp);
+        toInsert.add(Jimple.v().newAssignStmt(temp, right));
+        toInsert.add(Jimple.v().newAssignStmt(retrieval.assignment.getLeftOp(), temp));
+        units.insertBefore(toInsert, retrieval.assignment);
+      }
+      units.remove(retrieval.assignment);
+      instrumentedClasses.add(cl.getName());
+      logger.debug("Instrumenting " + cl.getName());
+    }
+  }
+
+  /** A bean retrieval and the statement that assigns the retrieved bean, if any. */
+  private static class BeanRetrieval {
+    private SootMethod method;
+    private AssignStmt retrieval;
+    private AssignStmt assignment;
+    private SootField typedField;
+
+    private BeanRetrieval(SootMethod method, AssignStmt retrieval) {
+      this.method = method;
+      this.retrieval = retrieval;
+    }
   }
 
   public void setObjectProviders(Map<SootClass, Set<SootMethod>> objectProviders) {
@@ -9,19 +9,33 @@
  */
 package averroes.soot;
 
+import averroes.gencg.AnnotationIndex;
 import averroes.options.AverroesOptions;
+import averroes.util.LongObjectMap;
+import averroes.util.io.Paths;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.stream.Collectors;
 import soot.ArrayType;
 import soot.Modifier;
 import soot.RefLikeType;
+import soot.RefType;
 import soot.Scene;
 import soot.SootClass;
 import soot.SootField;
@@ -30,6 +44,7 @@ import soot.Type;
 import soot.VoidType;
 import soot.coffi.AverroesApplicationConstantPool;
 import soot.tagkit.Tag;
+import soot.util.NumberedString;
 
 /**
  * A representation of the class hierarchy Averroes uses for the input program.
@@ -44,6 +59,8 @@ public class Hierarchy {
 
   private SootBasicClassesDatabase basicClassesDatabase;
 
+  private AnnotationIndex annotationIndex;
+
   private HashMap<SootClass, LinkedHashSet<SootClass>> classToSuperclasses;
   private HashMap<SootClass, SootClass> classToDirectSuperclass;
   private HashMap<SootClass, LinkedHashSet<SootClass>> classToSubclasses;
@@ -58,9 +75,7 @@ public class Hierarchy {
   private HashMap<SootClass, LinkedHashSet<SootClass>> interfaceToConcreteImplementers;
   private HashMap<SootClass, LinkedHashSet<SootClass>> interfaceToLibraryConcreteImplementers;
 
-  private HashMap<SootMethod, SootMethod> methodToTopmostSuperMethod;
-  private HashMap<SootMethod, SootMethod> methodToTopmostSuperclassesSuperMethod;
-  private HashMap<SootMethod, SootMethod> methodToTopmostSuperinterfacesSuperMethod;
+  private LongObjectMap<OverriddenMethods> overrideIndex;
 
   private HashMap<SootMethod, Set<SootMethod>> methodToSuperMethods;
   private HashMap<SootMethod, LinkedHashSet<SootMethod>> methodToSuperclassesSuperMethods;
@@ -78,6 +93,10 @@ public class Hierarchy {
   private HashMap<String, SootClass> nameToApplicationClass;
   private HashMap<String, SootClass> nameToLibraryClass;
 
+  // Membership of classes by their Soot number, the sorted sets are only used for iteration
+  private BitSet applicationClassNumbers;
+  private BitSet libraryClassNumbers;
+
   private SortedSet<SootClass> applicationClasses;
   private SortedSet<SootClass> libraryClasses;
 
@@ -99,6 +118,7 @@ public class Hierarchy {
 
   private int removedLibraryMethodCount;
   private int removedLibraryFieldCount;
+  private int removedLibraryClassCount;
 
   /**
    * Initialize the hierarchy with all the classes resolved at the level {@link ResolvingLevel#SIGNATURES
@@ -120,9 +140,7 @@ public class Hierarchy {
     interfaceToConcreteImplementers = new HashMap<SootClass, LinkedHashSet<SootClass>>();
     interfaceToLibraryConcreteImplementers = new HashMap<SootClass, LinkedHashSet<SootClass>>();
 
-    methodToTopmostSuperMethod = new HashMap<SootMethod, SootMethod>();
-    methodToTopmostSuperclassesSuperMethod = new HashMap<SootMethod, SootMethod>();
-    methodToTopmostSuperinterfacesSuperMethod = new HashMap<SootMethod, SootMethod>();
+    overrideIndex = new LongObjectMap<OverriddenMethods>();
 
     methodToSuperMethods = new HashMap<SootMethod, Set<SootMethod>>();
     methodToSuperclassesSuperMethods = new HashMap<SootMethod, LinkedHashSet<SootMethod>>();
@@ -141,6 +159,9 @@ public class Hierarchy {
     nameToApplicationClass = new HashMap<String, SootClass>();
     nameToLibraryClass = new HashMap<String, SootClass>();
 
+    applicationClassNumbers = new BitSet();
+    libraryClassNumbers = new BitSet();
+
     applicationClasses = new TreeSet<SootClass>(new SootClassHierarchyComparer(this));
     libraryClasses = new TreeSet<SootClass>(new SootClassHierarchyComparer(this));
 
@@ -162,6 +183,7 @@ public class Hierarchy {
 
     removedLibraryMethodCount = 0;
     removedLibraryFieldCount = 0;
+    removedLibraryClassCount = 0;
 
     initialize();
 
@@ -373,6 +395,15 @@ public class Hierarchy {
     return basicClassesDatabase;
   }
 
+  /**
+   * Get the index of the annotations on application classes, methods and fields.
+   *
+   * @return
+   */
+  public AnnotationIndex getAnnotationIndex() {
+    return annotationIndex;
+  }
+
   /**
    * Get the array types that appear as return types of library methods.
    *
@@ -464,6 +495,15 @@ public class Hierarchy {
     return removedLibraryFieldCount;
   }
 
+  /**
+   * Get the number of library classes removed because they are not reachable from the application.
+   *
+   * @return
+   */
+  public int getRemovedLibraryClassCount() {
+    return removedLibraryClassCount;
+  }
+
   /**
    * Get the number of methods.
    *
@@ -486,17 +526,194 @@ public class Hierarchy {
    * Clean up the hierarchy from methods and fields not referenced by the application. In addition,
    * add default constructors to classes that don't have one. They will be used by Averroes to
    * create objects in the doItAll method.
+   *
+   * <p>The default constructors are added first. Then, the removable methods, exceptions and fields
+   * of all library classes are found in parallel, while the hierarchy is not modified. Whether a
+   * concrete method that overrides other methods is removable depends on the methods removed from
+   * its supertypes, so it is only decided when the changes are applied to the library classes one
+   * after the other, supertypes first.
    */
   public void cleanupLibraryClasses() {
-    for (SootClass libraryClass : libraryClasses) {
-      if (NonFilterClasses.isNonFilterClass(libraryClass.getName())) continue;
-      addDefaultConstructorToLibraryClass(libraryClass);
-      cleanupLibraryClassTags(libraryClass);
-      cleanupMethodsInLibraryClass(libraryClass);
-      cleanupFieldsInLibraryClass(libraryClass);
+    if (AverroesOptions.isPruneLibrary()) pruneUnreachableLibraryClasses();
+    List<SootClass> classesToCleanup =
+        libraryClasses.stream()
+            .filter(libraryClass -> !NonFilterClasses.isNonFilterClass(libraryClass.getName()))
+            .collect(Collectors.toList());
+    classesToCleanup.forEach(this::addDefaultConstructorToLibraryClass);
+    List<LibraryClassCleanup> cleanups =
+        classesToCleanup
+            .parallelStream()
+            .map(this::findRemovableMembers)
+            .collect(Collectors.toList());
+    for (LibraryClassCleanup cleanup : cleanups) {
+      cleanupLibraryClassTags(cleanup.libraryClass);
+      cleanupMethodsInLibraryClass(cleanup);
+      cleanupFieldsInLibraryClass(cleanup);
+    }
+  }
+
+  /**
+   * Find the removable methods, method exceptions and fields of the given library class. This only
+   * queries the hierarchy, such that it can be done for several classes in parallel.
+   *
+   * @param libraryClass
+   * @return
+   */
+  private LibraryClassCleanup findRemovableMembers(SootClass libraryClass) {
+    LibraryClassCleanup cleanup = new LibraryClassCleanup(libraryClass);
+
+    // read the subclasses without getSubclassesOf, which adds missing entries to the map
+    cleanup.isExtendedByApplication =
+        classToSubclasses.getOrDefault(libraryClass, new LinkedHashSet<SootClass>()).stream()
+            .anyMatch(this::isApplicationClass);
+    if (!cleanup.isExtendedByApplication) {
+      for (SootMethod method : libraryClass.getMethods()) {
+        if (isLibraryMethodRemovable(method)) {
+          cleanup.methodsToRemove.add(method);
+        } else {
+          // a kept method that is neither basic nor referenced is a concrete overriding method
+          if (!isBasicLibraryMethod(method) && !isLibraryMethodReferencedInApplication(method)) {
+            cleanup.overridingMethods.add(method);
+          }
+          cleanup.methodToRemovableExceptions.put(method, findRemovableExceptions(method));
+        }
+      }
+    }
+
+    for (SootField field : libraryClass.getFields()) {
+      if (isLibraryFieldRemovable(field)) {
+        cleanup.fieldsToRemove.add(field);
+      } else {
+        cleanup.fieldsToKeep.add(field);
+      }
+    }
+
+    return cleanup;
+  }
+
+  /** The members of a library class to remove or to clean up. */
+  private static class LibraryClassCleanup {
+    private SootClass libraryClass;
+    private boolean isExtendedByApplication;
+    private List<SootMethod> methodsToRemove = new ArrayList<SootMethod>();
+    private List<SootMethod> overridingMethods = new ArrayList<SootMethod>();
+    private Map<SootMethod, List<SootClass>> methodToRemovableExceptions =
+        new LinkedHashMap<SootMethod, List<SootClass>>();
+    private List<SootField> fieldsToRemove = new ArrayList<SootField>();
+    private List<SootField> fieldsToKeep = new ArrayList<SootField>();
+
+    private LibraryClassCleanup(SootClass libraryClass) {
+      this.libraryClass = libraryClass;
     }
   }
 
+  /**
+   * Remove the library classes that are not reachable from the application. The reachable classes
+   * are computed with a worklist, starting from the library classes, methods and fields referenced
+   * in the application constant pool, the library supermethods of application methods, the library
+   * types in the signatures of application classes, the annotation types used by the application,
+   * the basic classes and the classes of java.lang and java.lang.reflect. The supertypes and
+   * subtypes of a reachable class and the types in the signatures of its members are reachable as
+   * well. Methods and fields that refer to a removed class are removed by the cleanup afterwards.
+   */
+  private void pruneUnreachableLibraryClasses() {
+    if (AverroesOptions.isAndroidApk()) return; // the constant pool of apks lacks class entries
+
+    Set<SootClass> reachable = new HashSet<SootClass>();
+    Deque<SootClass> worklist = new ArrayDeque<SootClass>();
+
+    worklist.addAll(applicationConstantPool.getLibraryClasses());
+    for (SootMethod method : libraryMethodsReferencedInApplication) {
+      worklist.add(method.getDeclaringClass());
+      addSignatureTypes(method, worklist);
+    }
+    for (SootField field : libraryFieldsReferencedInApplication) {
+      worklist.add(field.getDeclaringClass());
+      addClassOfType(field.getType(), worklist);
+    }
+    for (SootClass cls : applicationClasses) {
+      worklist.addAll(getSuperclassesOf(cls));
+      worklist.addAll(getSuperinterfacesOf(cls));
+      cls.getMethods().forEach(method -> addSignatureTypes(method, worklist));
+      cls.getFields().forEach(field -> addClassOfType(field.getType(), worklist));
+    }
+    for (String annotation : annotationIndex.getAnnotationTypes()) {
+      addClassOfName(annotation, worklist);
+    }
+    for (String className : basicClassesDatabase.listClasses()) {
+      addClassOfName(className, worklist);
+    }
+    for (SootClass cls : libraryClasses) {
+      // the runtime and reflection classes may be needed by the generated library itself
+      String packageName = cls.getPackageName();
+      if (packageName.equals("java.lang")
+          || packageName.equals("java.lang.reflect")
+          || NonFilterClasses.isNonFilterClass(cls.getName())) {
+        worklist.add(cls);
+      }
+    }
+
+    while (!worklist.isEmpty()) {
+      SootClass cls = worklist.poll();
+      if (!isLibraryClass(cls) || !reachable.add(cls)) continue;
+      worklist.addAll(getSuperclassesOf(cls));
+      worklist.addAll(getSuperinterfacesOf(cls));
+      // the generated library may create an object of any subtype of a reachable type
+      worklist.addAll(cls.isInterface() ? getImplementersOf(cls) : getSubclassesOf(cls));
+      // the members of a reachable class are kept, and so are the types in their signatures
+      cls.getMethods().forEach(method -> addSignatureTypes(method, worklist));
+      cls.getFields().forEach(field -> addClassOfType(field.getType(), worklist));
+    }
+
+    Set<SootClass> unreachable = new HashSet<SootClass>(libraryClasses);
+    unreachable.removeAll(reachable);
+    for (SootClass cls : unreachable) {
+      libraryClasses.remove(cls);
+      nameToLibraryClass.remove(cls.getName());
+      libraryClassNumbers.clear(cls.getNumber());
+      abstractLibraryClasses.remove(cls);
+      concreteLibraryClasses.remove(cls);
+      libraryInterfaces.remove(cls);
+      abstractLibraryClassesNotImplementedInLibrary.remove(cls);
+      libraryInterfacesNotImplementedInLibrary.remove(cls);
+      libraryMethodCount -= cls.getMethodCount();
+      libraryFieldCount -= cls.getFieldCount();
+    }
+    for (HashMap<SootClass, LinkedHashSet<SootClass>> relation :
+        Arrays.asList(
+            classToSubclasses,
+            classToConcreteSubclasses,
+            classToLibraryConcreteSubclasses,
+            classToDirectSubclasses,
+            interfaceToDirectImplementers,
+            interfaceToImplementers,
+            interfaceToConcreteImplementers,
+            interfaceToLibraryConcreteImplementers)) {
+      relation.values().forEach(classes -> classes.removeAll(unreachable));
+    }
+    removedLibraryClassCount = unreachable.size();
+
+    // some abstract classes and interfaces may have lost their only library implementation
+    findUnimplementedLibraryClasses();
+    cleanupLibraryArrayTypeReturns();
+  }
+
+  private void addSignatureTypes(SootMethod method, Collection<SootClass> classes) {
+    addClassOfType(method.getReturnType(), classes);
+    method.getParameterTypes().forEach(type -> addClassOfType(type, classes));
+    classes.addAll(method.getExceptions());
+  }
+
+  private void addClassOfType(Type type, Collection<SootClass> classes) {
+    Type baseType = getBaseType(type);
+    if (baseType instanceof RefType) classes.add(((RefType) baseType).getSootClass());
+  }
+
+  private void addClassOfName(String className, Collection<SootClass> classes) {
+    SootClass cls = nameToLibraryClass.get(className);
+    if (cls != null) classes.add(cls);
+  }
+
   /**
    * Get a list of all the classes that make up this hierarchy.
    *
@@ -710,7 +927,10 @@ public class Hierarchy {
    * @return
    */
   public boolean isApplicationClass(SootClass cls) {
-    return isApplicationClass(cls.getName());
+    // classes that are not in the Scene are not numbered
+    return cls.getNumber() == 0
+        ? isApplicationClass(cls.getName())
+        : applicationClassNumbers.get(cls.getNumber());
   }
 
   /**
@@ -740,7 +960,10 @@ public class Hierarchy {
    * @return
    */
   public boolean isLibraryClass(SootClass cls) {
-    return isLibraryClass(cls.getName());
+    // classes that are not in the Scene are not numbered
+    return cls.getNumber() == 0
+        ? isLibraryClass(cls.getName())
+        : libraryClassNumbers.get(cls.getNumber());
   }
 
   /**
@@ -1186,42 +1409,6 @@ public class Hierarchy {
     return superMethods != null && !superMethods.isEmpty();
   }
 
-  /**
-   * Check if this method has a concrete supermethod.
-   *
-   * @param method
-   * @return
-   */
-  public boolean hasConcreteSuperMethod(SootMethod method) {
-    if (hasSuperMethods(method)) {
-      for (SootMethod superMethod : getSuperMethodsOf(method)) {
-        if (superMethod.isConcrete()) {
-          return true;
-        }
-      }
-    }
-
-    return false;
-  }
-
-  /**
-   * Check if this method has an abstract supermethod.
-   *
-   * @param method
-   * @return
-   */
-  public boolean hasAbstractSuperMethod(SootMethod method) {
-    if (hasSuperMethods(method)) {
-      for (SootMethod superMethod : getSuperMethodsOf(method)) {
-        if (superMethod.isAbstract()) {
-          return true;
-        }
-      }
-    }
-
-    return false;
-  }
-
   /**
    * Get the set of methods overridden by the given method in its superclasses.
    *
@@ -1309,19 +1496,10 @@ public class Hierarchy {
    */
   public SootMethod getTopmostSuperMethodOf(SootMethod method) {
     if (canOverride(method)) {
-      if (!methodToTopmostSuperMethod.containsKey(method)) {
-        SootMethod superMethod = null;
-
-        if (hasTopmostSuperclassesSuperMethod(method)) {
-          superMethod = getTopmostSuperclassesSuperMethodOf(method);
-        } else if (hasTopmostSuperinterfacesSuperMethod(method)) {
-          superMethod = getTopmostSuperinterfacesSuperMethodOf(method);
-        }
-
-        methodToTopmostSuperMethod.put(method, superMethod);
-      }
-
-      return methodToTopmostSuperMethod.get(method);
+      OverriddenMethods overridden = getOverriddenMethods(method);
+      return overridden.topmostSuperclassesSuperMethod != null
+          ? overridden.topmostSuperclassesSuperMethod
+          : overridden.topmostSuperinterfacesSuperMethod;
     }
 
     return null;
@@ -1346,20 +1524,7 @@ public class Hierarchy {
    */
   public SootMethod getTopmostSuperclassesSuperMethodOf(SootMethod method) {
     if (canOverride(method)) {
-      if (!methodToTopmostSuperclassesSuperMethod.containsKey(method)) {
-        SootMethod result = null;
-
-        if (hasSuperclassesSuperMethods(method)) {
-          LinkedHashSet<SootMethod> s = getSuperclassesSuperMethodsOf(method);
-          result = s.stream().skip(s.size() - 1).findFirst().get();
-          // result =
-          // SetUtils.getLastElement(getSuperclassesSuperMethodsOf(method));
-        }
-
-        methodToTopmostSuperclassesSuperMethod.put(method, result);
-      }
-
-      return methodToTopmostSuperclassesSuperMethod.get(method);
+      return getOverriddenMethods(method).topmostSuperclassesSuperMethod;
     }
 
     return null;
@@ -1386,21 +1551,7 @@ public class Hierarchy {
    */
   public SootMethod getTopmostSuperinterfacesSuperMethodOf(SootMethod method) {
     if (canOverride(method)) {
-      if (!methodToTopmostSuperinterfacesSuperMethod.containsKey(method)) {
-        SootMethod result = null;
-
-        if (hasSuperinterfacesSuperMethods(method)) {
-          Set<SootMethod> impureResult = getSuperinterfacesSuperMethodsOf(method);
-
-          if (!impureResult.isEmpty()) {
-            result = purifySuperinterfacesSuperMethodsSet(impureResult);
-          }
-        }
-
-        methodToTopmostSuperinterfacesSuperMethod.put(method, result);
-      }
-
-      return methodToTopmostSuperinterfacesSuperMethod.get(method);
+      return getOverriddenMethods(method).topmostSuperinterfacesSuperMethod;
     }
 
     return null;
@@ -1565,11 +1716,114 @@ public class Hierarchy {
     return libraryInterfacesNotImplementedInLibrary;
   }
 
+  /**
+   * Create the override index of all the methods that can override other methods. The index is
+   * built top-down: the entry of a class is combined from the entries of its direct superclass and
+   * direct superinterfaces, such that each (class, subsignature) pair is computed only once.
+   */
+  private void createOverrideIndex() {
+    for (SootClass cls : classes) {
+      for (SootMethod method : cls.getMethods()) {
+        if (canOverride(method)) getOverriddenMethods(method);
+      }
+    }
+  }
+
+  /**
+   * Get the methods overridden by the given method, i.e., the methods with the same subsignature in
+   * the supertypes of its declaring class.
+   *
+   * @param method
+   * @return
+   */
+  private OverriddenMethods getOverriddenMethods(SootMethod method) {
+    return getOverriddenMethods(method.getDeclaringClass(), method.getNumberedSubSignature());
+  }
+
+  private OverriddenMethods getOverriddenMethods(SootClass cls, NumberedString subSignature) {
+    // the class number and the subsignature number together identify a method slot
+    long key = ((long) cls.getNumber() << 32) | subSignature.getNumber();
+    OverriddenMethods result = overrideIndex.get(key);
+    if (result == null) {
+      result = new OverriddenMethods();
+
+      if (cls.hasSuperclass()) {
+        SootClass superClass = getDirectSuperclassOf(cls);
+        OverriddenMethods inherited = getOverriddenMethods(superClass, subSignature);
+        result.topmostSuperclassesSuperMethod = inherited.topmostSuperclassesSuperMethod;
+        result.addSuperinterfacesSuperMethods(inherited);
+
+        // NOTE: Private methods are ignored in calculating
+        // supermethods from superclasses
+        SootMethod m = superClass.getMethodUnsafe(subSignature);
+        if (m != null && !m.isPrivate() && result.topmostSuperclassesSuperMethod == null) {
+          result.topmostSuperclassesSuperMethod = m;
+        }
+      }
+
+      for (SootClass superInterface : getDirectSuperinterfacesOf(cls)) {
+        OverriddenMethods inherited = getOverriddenMethods(superInterface, subSignature);
+        SootMethod m = superInterface.getMethodUnsafe(subSignature);
+        if (inherited.superinterfacesSuperMethods.isEmpty() && m != null) {
+          // m is not overriding any other superinterface method, so it is one of the topmost
+          result.superinterfacesSuperMethods.add(m);
+        }
+        result.addSuperinterfacesSuperMethods(inherited);
+      }
+
+      if (!result.superinterfacesSuperMethods.isEmpty()) {
+        result.topmostSuperinterfacesSuperMethod =
+            Collections.min(result.superinterfacesSuperMethods, new SootMethodComparer());
+      }
+      overrideIndex.put(key, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * The methods overridden by a method with a given subsignature declared in a given class. Only
+   * the topmost methods of the superinterfaces are kept, i.e., the ones that do not override a
+   * method of another superinterface.
+   */
+  private static class OverriddenMethods {
+    private SootMethod topmostSuperclassesSuperMethod;
+    private SootMethod topmostSuperinterfacesSuperMethod;
+    private Set<SootMethod> superinterfacesSuperMethods = new LinkedHashSet<SootMethod>();
+
+    private void addSuperinterfacesSuperMethods(OverriddenMethods inherited) {
+      superinterfacesSuperMethods.addAll(inherited.superinterfacesSuperMethods);
+    }
+  }
+
+  /**
+   * Create the annotation index of the application classes. If the annotation pre-scan is enabled,
+   * the index is read from the file written while organizing the input archives. Otherwise, it is
+   * built from the Soot annotation tags. The meta-annotations of the annotation types are indexed
+   * right away, because the tags of library classes are removed during their cleanup.
+   */
+  private void createAnnotationIndex() {
+    File annotationIndexFile = Paths.annotationIndexFile();
+    if (AverroesOptions.isAnnotationPrescan() && annotationIndexFile.exists()) {
+      try {
+        annotationIndex = new AnnotationIndex(annotationIndexFile);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    if (annotationIndex == null) {
+      annotationIndex = new AnnotationIndex(applicationClasses);
+    }
+    annotationIndex.indexMetaAnnotations();
+  }
+
   /** Initialize some stuff. */
   private void initialize() {
     collectClassNames();
     calculateBaseRelations();
     createClassTrees();
+    createOverrideIndex();
+    createAnnotationIndex();
     findLibrarySuperMethodsOfApplicationMethods();
     findLibraryEntitiesReferencedInApplication();
     findUnimplementedLibraryClasses();
@@ -1583,11 +1837,13 @@ public class Hierarchy {
       if (AverroesOptions.isLoadedApplicationClass(cls)) {
         cls.setApplicationClass();
         nameToApplicationClass.put(cls.getName(), cls);
+        applicationClassNumbers.set(cls.getNumber());
         applicationMethodCount += cls.getMethodCount();
         applicationFieldCount += cls.getFieldCount();
       } else {
         cls.setLibraryClass();
         nameToLibraryClass.put(cls.getName(), cls);
+        libraryClassNumbers.set(cls.getNumber());
         libraryMethodCount += cls.getMethodCount();
         libraryFieldCount += cls.getFieldCount();
         // Get the return array types of library methods
@@ -1741,44 +1997,6 @@ public class Hierarchy {
     libraryFieldsReferencedInApplication.addAll(applicationConstantPool.getLibraryFields());
   }
 
-  /**
-   * Purify the set of superinterfaces supermethods. That's remove methods whose declaring class has
-   * a superinterface within this same set, then sort the set of methods alphabetically according to
-   * the name of the declaring class.
-   *
-   * @param superMethods
-   * @return
-   */
-  private SootMethod purifySuperinterfacesSuperMethodsSet(Set<SootMethod> superMethods) {
-    SortedSet<SootMethod> sorted = new TreeSet<SootMethod>(new SootMethodComparer());
-
-    for (SootMethod method : superMethods) {
-      if (!containsSuperinterface(superMethods, method.getDeclaringClass())) {
-        sorted.add(method);
-      }
-    }
-
-    return sorted.first(); // we are sure that the input set is not empty
-  }
-
-  /**
-   * Check if the given set of methods contain a method whose declaring class is a superinterface of
-   * the given class.
-   *
-   * @param methods
-   * @param cls
-   * @return
-   */
-  private boolean containsSuperinterface(Set<SootMethod> methods, SootClass cls) {
-    for (SootMethod method : methods) {
-      if (isSuperinterfaceOf(method.getDeclaringClass(), cls)) {
-        return true;
-      }
-    }
-
-    return false;
-  }
-
   /**
    * Check if the given class is resolved at least at the level {@link ResolvingLevel#SIGNATURES}.
    *
@@ -1809,28 +2027,27 @@ public class Hierarchy {
    * addition, remove any exceptions that are not referenced by the application. Finally, change any
    * native method to be non-native.
    *
-   * @param libraryClass
+   * @param cleanup
    */
-  private void cleanupMethodsInLibraryClass(SootClass libraryClass) {
-    for (SootClass c : getSubclassesOf(libraryClass)) {
-      if (applicationClasses.contains(
-          c)) // if the library class is extended, we don't remove its method.
-      return;
-    }
-    Set<SootMethod> toRemove = new HashSet<SootMethod>();
-    for (SootMethod method : libraryClass.getMethods()) {
-      if (isLibraryMethodRemovable(method)) {
-        toRemove.add(method);
-      } else {
-        cleanupLibraryMethodExceptions(method);
-        cleanupLibraryMethodTags(method);
-        makeNotNative(method);
+  private void cleanupMethodsInLibraryClass(LibraryClassCleanup cleanup) {
+    // if the library class is extended, we don't remove its method.
+    if (cleanup.isExtendedByApplication) return;
+    for (SootMethod method : cleanup.overridingMethods) {
+      if (isOverridingLibraryMethodRemovable(method)) {
+        cleanup.methodToRemovableExceptions.remove(method);
+        cleanup.methodsToRemove.add(method);
       }
     }
+    cleanup.methodToRemovableExceptions.forEach(
+        (method, exceptions) -> {
+          cleanupLibraryMethodExceptions(method, exceptions);
+          cleanupLibraryMethodTags(method);
+          makeNotNative(method);
+        });
 
     // Remove the methods the proper way.
-    for (SootMethod method : toRemove) {
-      libraryClass.removeMethod(method);
+    for (SootMethod method : cleanup.methodsToRemove) {
+      cleanup.libraryClass.removeMethod(method);
 
       // Update the method counts
       removedLibraryMethodCount++;
@@ -1839,18 +2056,28 @@ public class Hierarchy {
   }
 
   /**
-   * Cleanup the exceptions list of a library method.
+   * Find the exceptions that can be removed from the exceptions list of a library method.
    *
    * @param libraryMethod
+   * @return
    */
-  private void cleanupLibraryMethodExceptions(SootMethod libraryMethod) {
-    Set<SootClass> toRemove = new HashSet<SootClass>();
+  private List<SootClass> findRemovableExceptions(SootMethod libraryMethod) {
+    List<SootClass> toRemove = new ArrayList<SootClass>();
     for (SootClass exception : libraryMethod.getExceptions()) {
       if (isLibraryMethodExceptionRemovable(exception)) {
         toRemove.add(exception);
       }
     }
+    return toRemove;
+  }
 
+  /**
+   * Cleanup the exceptions list of a library method.
+   *
+   * @param libraryMethod
+   * @param toRemove
+   */
+  private void cleanupLibraryMethodExceptions(SootMethod libraryMethod, List<SootClass> toRemove) {
     // Remove the exceptions the proper way.
     for (SootClass exception : toRemove) {
       libraryMethod.removeException(exception);
@@ -1897,22 +2124,16 @@ public class Hierarchy {
    * Cleanup a library class from any removable fields. A field is removable if it is not referenced
    * by the application.
    *
-   * @param libraryClass
+   * @param cleanup
    */
-  private void cleanupFieldsInLibraryClass(SootClass libraryClass) {
-    Set<SootField> toRemove = new HashSet<SootField>();
-
-    for (SootField field : libraryClass.getFields()) {
-      if (isLibraryFieldRemovable(field)) {
-        toRemove.add(field);
-      } else {
-        cleanupLibraryFieldTags(field);
-      }
+  private void cleanupFieldsInLibraryClass(LibraryClassCleanup cleanup) {
+    for (SootField field : cleanup.fieldsToKeep) {
+      cleanupLibraryFieldTags(field);
     }
 
     // Remove the fields the proper way.
-    for (SootField field : toRemove) {
-      libraryClass.removeField(field);
+    for (SootField field : cleanup.fieldsToRemove) {
+      cleanup.libraryClass.removeField(field);
 
       // Update the field counts
       removedLibraryFieldCount++;
@@ -1939,7 +2160,10 @@ public class Hierarchy {
   }
 
   /**
-   * Check if it is safe to remove the given library method from its class.
+   * Check if it is safe to remove the given library method from its class, regardless of the
+   * methods removed from other library classes. A concrete method that can override other methods
+   * is not removable here, it is checked by {@link #isOverridingLibraryMethodRemovable(SootMethod)}
+   * once its supertypes are cleaned up.
    *
    * @param libraryMethod
    * @return
@@ -1952,10 +2176,41 @@ public class Hierarchy {
     } else if (isBasicLibraryMethod(libraryMethod)
         || isLibraryMethodReferencedInApplication(libraryMethod)) {
       return false;
-    } else
-      return !libraryMethod.isConcrete()
-          || hasConcreteSuperMethod(libraryMethod)
-          || !hasAbstractSuperMethod(libraryMethod);
+    } else return !libraryMethod.isConcrete() || !canOverride(libraryMethod);
+  }
+
+  /**
+   * Check if it is safe to remove the given concrete library method that is not referenced by the
+   * application, i.e., if it overrides a concrete method or does not override any abstract method.
+   * The supermethods are looked up in the supertypes as they are now, after their own cleanup.
+   *
+   * @param libraryMethod
+   * @return
+   */
+  private boolean isOverridingLibraryMethodRemovable(SootMethod libraryMethod) {
+    SootClass cls = libraryMethod.getDeclaringClass();
+    NumberedString subSignature = libraryMethod.getNumberedSubSignature();
+    boolean hasAbstractSuperMethod = false;
+
+    for (SootClass superClass : getSuperclassesOf(cls)) {
+      // NOTE: Private methods are ignored in calculating
+      // supermethods from superclasses
+      SootMethod m = superClass.getMethodUnsafe(subSignature);
+      if (m != null && !m.isPrivate()) {
+        if (m.isConcrete()) return true;
+        hasAbstractSuperMethod |= m.isAbstract();
+      }
+    }
+
+    for (SootClass superInterface : getSuperinterfacesOf(cls)) {
+      SootMethod m = superInterface.getMethodUnsafe(subSignature);
+      if (m != null) {
+        if (m.isConcrete()) return true;
+        hasAbstractSuperMethod |= m.isAbstract();
+      }
+    }
+
+    return !hasAbstractSuperMethod;
   }
 
   /**
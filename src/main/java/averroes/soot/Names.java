@@ -82,6 +82,10 @@ public class Names {
   public static final String AVERROES_LIBRARY_CLINIT_METHOD_SIGNATURE =
       "<" + AVERROES_LIBRARY_CLASS + ": void " + SootMethod.staticInitializerName + "()>";
 
+  // Bean retrieval methods
+  public static final String GET_BEAN_METHOD_NAME = "getBean";
+  public static final String GET_INSTANCE_METHOD_NAME = "getInstance";
+
   // Reflection methods
   public static final String FOR_NAME_SIG =
       "<java.lang.Class: java.lang.Class forName(java.lang.String)>";
@@ -100,7 +104,7 @@ public class Names {
   private static int ID = 0;
   private static Map<RefLikeType, String> typedLibraryPointsToNames = new HashMap<>();
 
-  public static String getTypedLibraryPointsToName(RefLikeType fieldType) {
+  public static synchronized String getTypedLibraryPointsToName(RefLikeType fieldType) {
     if (typedLibraryPointsToNames.containsKey(fieldType))
       return typedLibraryPointsToNames.get(fieldType);
     ID++;
@@ -108,4 +112,8 @@ public class Names {
     typedLibraryPointsToNames.put(fieldType, name);
     return name;
   }
+
+  public static boolean isBeanRetrievalMethodName(String methodName) {
+    return methodName.equals(GET_BEAN_METHOD_NAME) || methodName.equals(GET_INSTANCE_METHOD_NAME);
+  }
 }
@@ -10,16 +10,31 @@
 package averroes.soot;
 
 import averroes.options.AverroesOptions;
+import averroes.util.io.Paths;
+import java.io.File;
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.TreeSet;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import soot.Modifier;
 import soot.Scene;
 import soot.SootClass;
 import soot.SootMethod;
 import soot.VoidType;
+import soot.options.Options;
 
 /**
  * A database of all the classes required by Soot to run properly. These are the classes from {@link
@@ -29,6 +44,9 @@ import soot.VoidType;
  */
 public class SootBasicClassesDatabase {
 
+  private static Logger logger = LoggerFactory.getLogger(SootBasicClassesDatabase.class);
+  private static String sootJarStamp;
+
   private Hierarchy hierarchy;
   private HashMap<String, String> fakeHierarchy;
 
@@ -49,34 +67,174 @@ public class SootBasicClassesDatabase {
     Set<SootClass> result = new HashSet<SootClass>();
     for (String className : listClasses()) {
       if (!hierarchy.isLibraryClass(className)) {
-        SootClass basicClass = new SootClass(className);
-
-        // Add the register method to the finalizer class
-        if (className.equals(Names.JAVA_LANG_REF_FINALIZER)) {
-          SootMethod register =
-              new SootMethod(
-                  "register",
-                  Arrays.asList(hierarchy.getJavaLangObject().getType()),
-                  VoidType.v(),
-                  Modifier.STATIC);
-          basicClass.addMethod(register);
-          AverroesJimpleBody body = new AverroesJimpleBody(register);
-          body.insertStandardJimpleBodyFooter();
-          body.validate();
+        result.add(createBasicClass(className));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Write the class files of the basic classes that are missing from the hierarchy to the given
+   * directory. If the cache is enabled, a basic class file is generated once into a sub-directory
+   * of {@link Paths#basicClassesCacheDirectory()} named after {@link #cacheKey()} and copied from
+   * there in later runs.
+   *
+   * @param outputDir
+   * @throws IOException
+   */
+  public void writeMissingBasicClasses(File outputDir) throws IOException {
+    if (!AverroesOptions.isBasicClassesCacheEnabled()) {
+      generateMissingBasicClasses(outputDir);
+      return;
+    }
+
+    File cacheDir = new File(Paths.basicClassesCacheDirectory(), cacheKey());
+    if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+      logger.warn("Cannot create the basic classes cache " + cacheDir + ", generating them again");
+      generateMissingBasicClasses(outputDir);
+      return;
+    }
+
+    for (String className : listClasses()) {
+      if (hierarchy.isLibraryClass(className)) continue;
+      String classFile = className.replace('.', File.separatorChar) + ".class";
+      File cachedFile = new File(cacheDir, classFile);
+      if (!cachedFile.exists()) cacheBasicClass(className, cacheDir);
+      if (cachedFile.exists()) {
+        File outputFile = new File(outputDir, classFile);
+        outputFile.getParentFile().mkdirs();
+        Files.copy(cachedFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+  }
+
+  private void generateMissingBasicClasses(File outputDir) throws IOException {
+    for (SootClass basicClass : getMissingBasicClasses()) {
+      CodeGenerator.writeClassFile(outputDir.getPath(), basicClass);
+    }
+  }
+
+  /**
+   * Get the name of the cache directory for the basic classes of this run. Next to the Soot version
+   * and the target Java version, it contains a hash of everything the generated class files depend
+   * on: the size and modification time of the Soot jar, the options that change the generated code,
+   * the basic classes and their fake superclasses.
+   *
+   * @return
+   * @throws IOException
+   */
+  private String cacheKey() throws IOException {
+    StringBuilder key = new StringBuilder();
+    key.append(sootJarStamp()).append('\n');
+    key.append("guards=").append(AverroesOptions.isEnableGuards()).append('\n');
+    key.append("opaque-guards=").append(AverroesOptions.isOpaqueGuards()).append('\n');
+    for (String className : new TreeSet<String>(listClasses())) {
+      key.append(className).append(':').append(fakeHierarchy.get(className)).append('\n');
+    }
+    String hash = sha256(key.toString().getBytes(StandardCharsets.UTF_8));
+    return soot.Main.versionString
+        + "-java"
+        + Options.v().java_version()
+        + "-"
+        + hash.substring(0, 16);
+  }
+
+  /**
+   * Get the size and modification time of the Soot jar the tool runs with. Two Soot builds with the
+   * same version string (e.g., snapshots) may still generate different class files. Reading the
+   * whole jar in every run would cost more than generating the basic classes, so the jar is only
+   * stamped. If Soot is not loaded from a jar, the stamp is empty.
+   *
+   * @return
+   * @throws IOException
+   */
+  private static synchronized String sootJarStamp() throws IOException {
+    if (sootJarStamp == null) {
+      sootJarStamp = "";
+      try {
+        CodeSource source = Scene.class.getProtectionDomain().getCodeSource();
+        if (source != null) {
+          Path sootJar = java.nio.file.Paths.get(source.getLocation().toURI());
+          if (Files.isRegularFile(sootJar)) {
+            sootJarStamp =
+                Files.size(sootJar) + "-" + Files.getLastModifiedTime(sootJar).toMillis();
+          }
         }
+      } catch (URISyntaxException | IllegalArgumentException e) {
+        logger.warn("Cannot locate the Soot jar: " + e.getMessage());
+      }
+    }
+    return sootJarStamp;
+  }
 
-        result.add(basicClass);
+  private static String sha256(byte[] bytes) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(bytes);
+      StringBuilder result = new StringBuilder();
+      for (byte b : digest.digest()) {
+        result.append(String.format("%02x", b));
       }
+      return result.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
     }
+  }
 
-    // Set the superclass of the basic classes based on the underlying
-    // hierarchy
-    for (SootClass cls : result) {
-      if (fakeHierarchy.containsKey(cls.getName())) {
-        cls.setSuperclass(Scene.v().getSootClass(fakeHierarchy.get(cls.getName())));
+  /**
+   * Generate the class file of the given basic class into the cache directory. The class file is
+   * first written to a temporary directory next to the cache, such that other runs never read a
+   * partially written file.
+   *
+   * @param className
+   * @param cacheDir
+   * @throws IOException
+   */
+  private void cacheBasicClass(String className, File cacheDir) throws IOException {
+    Path tmpDir = Files.createTempDirectory(cacheDir.toPath(), "tmp");
+    try {
+      CodeGenerator.writeClassFile(tmpDir.toString(), createBasicClass(className));
+      String classFile = className.replace('.', File.separatorChar) + ".class";
+      Path generatedFile = tmpDir.resolve(classFile);
+      if (Files.exists(generatedFile)) {
+        Path cachedFile = cacheDir.toPath().resolve(classFile);
+        Files.createDirectories(cachedFile.getParent());
+        Files.move(generatedFile, cachedFile, StandardCopyOption.REPLACE_EXISTING);
       }
+    } finally {
+      FileUtils.deleteDirectory(tmpDir.toFile());
     }
-    return result;
+  }
+
+  /**
+   * Create an empty placeholder for the given basic class.
+   *
+   * @param className
+   * @return
+   */
+  private SootClass createBasicClass(String className) {
+    SootClass basicClass = new SootClass(className);
+
+    // Add the register method to the finalizer class
+    if (className.equals(Names.JAVA_LANG_REF_FINALIZER)) {
+      SootMethod register =
+          new SootMethod(
+              "register",
+              Arrays.asList(hierarchy.getJavaLangObject().getType()),
+              VoidType.v(),
+              Modifier.STATIC);
+      basicClass.addMethod(register);
+      AverroesJimpleBody body = new AverroesJimpleBody(register);
+      body.insertStandardJimpleBodyFooter();
+      body.validate();
+    }
+
+    // Set the superclass of the basic class based on the underlying
+    // hierarchy
+    if (fakeHierarchy.containsKey(className)) {
+      basicClass.setSuperclass(Scene.v().getSootClass(fakeHierarchy.get(className)));
+    }
+    return basicClass;
   }
 
   /**
@@ -34,7 +34,7 @@ public enum ReflectiveCallType {
    * @return
    */
   public static final ReflectiveCallType stringToType(String type) {
-    if (type.equals(ARRAY_NEW_INSTANCE)) {
+    if (type.equals(ARRAY_NEW_INSTANCE.type())) {
       return ARRAY_NEW_INSTANCE;
     } else if (type.equals(CLASS_FOR_NAME.type())) {
       return CLASS_FOR_NAME;
@@ -9,84 +9,126 @@
  */
 package averroes.tamiflex;
 
-import averroes.options.AverroesOptions;
+import averroes.soot.Hierarchy;
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
+import soot.ArrayType;
+import soot.SootClass;
+import soot.SootMethod;
 
 /**
- * A database for all the TamiFlex facts Averroes extracts from the given TamiFlex facts file.
+ * A database for all the TamiFlex facts Averroes extracts from the given TamiFlex facts file. Each
+ * database holds the facts of one file, such that a new one can be loaded for every run. The
+ * targets are resolved against the class hierarchy only once, on the first request. The facts file
+ * is either a reflection log (refl.log) or a {@link TamiFlexFactsIndex} merged from several logs.
  *
  * @author karim
  */
 public class TamiFlexFactsDatabase {
 
-  private static Set<String> arrayNewInstance = new HashSet<String>();
-  private static Set<String> classForName = new HashSet<String>();
-  private static Set<String> classNewInstance = new HashSet<String>();
-  private static Set<String> constructorNewInstance = new HashSet<String>();
-  private static Set<String> methodInvoke = new HashSet<String>();
-
-  // Load the TamiFlex facts file on the first call to any static method
-  static {
-    try {
-      loadFacts();
-    } catch (IOException | URISyntaxException e) {
-      e.printStackTrace();
+  private Map<ReflectiveCallType, Set<String>> facts;
+  private Map<ReflectiveCallType, Map<String, Integer>> callSiteCounts;
+
+  private Map<ReflectiveCallType, Set<SootClass>> applicationClasses;
+  private Map<ReflectiveCallType, Set<SootMethod>> applicationMethods;
+  private Set<ArrayType> applicationArrayTypes;
+
+  private TamiFlexFactsDatabase() {
+    facts = new EnumMap<ReflectiveCallType, Set<String>>(ReflectiveCallType.class);
+    for (ReflectiveCallType type : ReflectiveCallType.values()) {
+      facts.put(type, new HashSet<String>());
     }
+    callSiteCounts =
+        new EnumMap<ReflectiveCallType, Map<String, Integer>>(ReflectiveCallType.class);
+    applicationClasses = new EnumMap<ReflectiveCallType, Set<SootClass>>(ReflectiveCallType.class);
+    applicationMethods = new EnumMap<ReflectiveCallType, Set<SootMethod>>(ReflectiveCallType.class);
+  }
+
+  /**
+   * Create a database without any facts, e.g., if TamiFlex is not enabled.
+   *
+   * @return
+   */
+  public static TamiFlexFactsDatabase empty() {
+    return new TamiFlexFactsDatabase();
   }
 
   /**
-   * Load the facts into the database.
+   * Load the facts of the given TamiFlex facts file (refl.log) into a new database.
    *
+   * @param factsFile
+   * @return
    * @throws IOException
-   * @throws URISyntaxException
    */
-  private static void loadFacts() throws IOException, URISyntaxException {
+  public static TamiFlexFactsDatabase load(String factsFile) throws IOException {
+    return load(Paths.get(factsFile));
+  }
 
-    if (AverroesOptions.isTamiflexEnabled()) {
-      String fileToLoad = AverroesOptions.getTamiflexFactsFile();
+  /**
+   * Load the facts of the given TamiFlex facts file into a new database. A facts index is
+   * memory-mapped. A reflection log is read line by line, and duplicate targets are dropped while
+   * reading.
+   *
+   * @param factsFile
+   * @return
+   * @throws IOException
+   */
+  public static TamiFlexFactsDatabase load(Path factsFile) throws IOException {
+    TamiFlexFactsDatabase database = new TamiFlexFactsDatabase();
+    if (TamiFlexFactsIndex.isIndex(factsFile)) {
+      TamiFlexFactsIndex.read(
+          factsFile,
+          (type, target, callSiteCount) -> {
+            database.facts.get(type).add(target);
+            database
+                .callSiteCounts
+                .computeIfAbsent(type, k -> new HashMap<String, Integer>())
+                .put(target, callSiteCount);
+          });
+      return database;
+    }
 
-      // BufferedReader in = new BufferedReader(new
-      // FileReader(FileUtils.getResource(fileToLoad)));
-      BufferedReader in = new BufferedReader(new FileReader(fileToLoad));
+    try (BufferedReader in = Files.newBufferedReader(factsFile, StandardCharsets.UTF_8)) {
       String line;
-
       while ((line = in.readLine()) != null) {
-        // Ignore empty lines
-        if (line.length() == 0) {
-          continue;
-        }
-
-        // Those are the the columns in the reflection log file
-        // generated by
-        // TamiFlex (got this from Soot)
-        String[] portions = line.split(";", -1);
-        ReflectiveCallType type = ReflectiveCallType.stringToType(portions[0]);
-        String target = portions[1];
-
-        // If it's a type that we handle, i.e. not null then add the
-        // target
-        // to the corresponding set
-        if (type != null) {
-          if (type.equals(ReflectiveCallType.ARRAY_NEW_INSTANCE)) {
-            arrayNewInstance.add(target);
-          } else if (type.equals(ReflectiveCallType.CLASS_FOR_NAME)) {
-            classForName.add(target);
-          } else if (type.equals(ReflectiveCallType.CLASS_NEWINSTANCE)) {
-            classNewInstance.add(target);
-          } else if (type.equals(ReflectiveCallType.CONSTRUCTOR_NEWINSTANCE)) {
-            constructorNewInstance.add(target);
-          } else if (type.equals(ReflectiveCallType.METHOD_INVOKE)) {
-            methodInvoke.add(target);
-          }
-        }
+        database.addFact(line);
       }
+    }
+    return database;
+  }
 
-      in.close();
+  /**
+   * Add the fact of one line of the reflection log. The columns are separated by semicolons, the
+   * first one is the reflective call type and the second one is the target (got this from Soot).
+   *
+   * @param line
+   */
+  private void addFact(String line) {
+    int typeEnd = line.indexOf(';');
+    // Ignore empty and malformed lines
+    if (typeEnd < 0) {
+      return;
+    }
+
+    // If it's a type that we handle, i.e. not null then add the target
+    // to the corresponding set
+    ReflectiveCallType type = ReflectiveCallType.stringToType(line.substring(0, typeEnd));
+    if (type != null) {
+      int targetEnd = line.indexOf(';', typeEnd + 1);
+      String target =
+          targetEnd < 0 ? line.substring(typeEnd + 1) : line.substring(typeEnd + 1, targetEnd);
+      facts.get(type).add(target);
     }
   }
 
@@ -95,8 +137,8 @@ public class TamiFlexFactsDatabase {
    *
    * @return
    */
-  public static Set<String> getArrayNewInstance() {
-    return arrayNewInstance;
+  public Set<String> getArrayNewInstance() {
+    return Collections.unmodifiableSet(facts.get(ReflectiveCallType.ARRAY_NEW_INSTANCE));
   }
 
   /**
@@ -104,8 +146,8 @@ public class TamiFlexFactsDatabase {
    *
    * @return
    */
-  public static Set<String> getClassForName() {
-    return classForName;
+  public Set<String> getClassForName() {
+    return Collections.unmodifiableSet(facts.get(ReflectiveCallType.CLASS_FOR_NAME));
   }
 
   /**
@@ -113,8 +155,8 @@ public class TamiFlexFactsDatabase {
    *
    * @return
    */
-  public static Set<String> getClassNewInstance() {
-    return classNewInstance;
+  public Set<String> getClassNewInstance() {
+    return Collections.unmodifiableSet(facts.get(ReflectiveCallType.CLASS_NEWINSTANCE));
   }
 
   /**
@@ -122,8 +164,8 @@ public class TamiFlexFactsDatabase {
    *
    * @return
    */
-  public static Set<String> getConstructorNewInstance() {
-    return constructorNewInstance;
+  public Set<String> getConstructorNewInstance() {
+    return Collections.unmodifiableSet(facts.get(ReflectiveCallType.CONSTRUCTOR_NEWINSTANCE));
   }
 
   /**
@@ -131,7 +173,80 @@ public class TamiFlexFactsDatabase {
    *
    * @return
    */
-  public static Set<String> getMethodInvoke() {
-    return methodInvoke;
+  public Set<String> getMethodInvoke() {
+    return Collections.unmodifiableSet(facts.get(ReflectiveCallType.METHOD_INVOKE));
+  }
+
+  /**
+   * Get the number of distinct call sites at which the given fact was logged. This is only known
+   * for facts loaded from a {@link TamiFlexFactsIndex}, otherwise it is 0.
+   *
+   * @param type
+   * @param target
+   * @return
+   */
+  public int getCallSiteCount(ReflectiveCallType type, String target) {
+    return callSiteCounts.getOrDefault(type, Collections.emptyMap()).getOrDefault(target, 0);
+  }
+
+  /**
+   * Get the application classes among the targets of the given reflective call type (e.g., {@value
+   * ReflectiveCallType#CLASS_FOR_NAME}).
+   *
+   * @param type
+   * @return
+   */
+  public Set<SootClass> getApplicationClasses(ReflectiveCallType type) {
+    return applicationClasses.computeIfAbsent(
+        type,
+        k -> {
+          Set<SootClass> result = new LinkedHashSet<SootClass>();
+          for (String className : facts.get(k)) {
+            if (Hierarchy.v().isApplicationClass(className)) {
+              result.add(Hierarchy.v().getClass(className));
+            }
+          }
+          return Collections.unmodifiableSet(result);
+        });
+  }
+
+  /**
+   * Get the application methods among the targets of the given reflective call type (e.g., {@value
+   * ReflectiveCallType#METHOD_INVOKE}).
+   *
+   * @param type
+   * @return
+   */
+  public Set<SootMethod> getApplicationMethods(ReflectiveCallType type) {
+    return applicationMethods.computeIfAbsent(
+        type,
+        k -> {
+          Set<SootMethod> result = new LinkedHashSet<SootMethod>();
+          for (String methodSignature : facts.get(k)) {
+            if (Hierarchy.v().isApplicationMethod(methodSignature)) {
+              result.add(Hierarchy.v().getMethod(methodSignature));
+            }
+          }
+          return Collections.unmodifiableSet(result);
+        });
+  }
+
+  /**
+   * Get the application array types among the {@value ReflectiveCallType#ARRAY_NEW_INSTANCE} facts.
+   *
+   * @return
+   */
+  public Set<ArrayType> getApplicationArrayTypes() {
+    if (applicationArrayTypes == null) {
+      Set<ArrayType> result = new LinkedHashSet<ArrayType>();
+      for (String arrayType : facts.get(ReflectiveCallType.ARRAY_NEW_INSTANCE)) {
+        String baseType = Hierarchy.getBaseType(arrayType);
+        if (Hierarchy.v().isApplicationClass(baseType)) {
+          result.add(Hierarchy.v().getArrayType(arrayType));
+        }
+      }
+      applicationArrayTypes = Collections.unmodifiableSet(result);
+    }
+    return applicationArrayTypes;
   }
 }
@@ -0,0 +1,287 @@
+package averroes.tamiflex;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A compact binary index of TamiFlex facts, merged from any number of reflection logs (refl.log).
+ * Duplicate facts are dropped, and each fact records the number of distinct call sites it was
+ * logged at. The facts are sorted by reflective call type and target.
+ *
+ * <p>The index file starts with a magic number, a format version and the number of facts. Each fact
+ * is stored as the ordinal of its reflective call type (byte), its call site count (int), its
+ * target and its call sites, each as length-prefixed UTF-8 bytes (short and bytes). Keeping the
+ * call sites allows merging new logs into an existing index without counting a call site twice.
+ *
+ * <p>Usage: TamiFlexFactsIndex &lt;index file&gt; &lt;refl.log or index file&gt;...
+ *
+ * @author Linghui Luo
+ */
+public class TamiFlexFactsIndex {
+
+  /** "TFIX" */
+  public static final int MAGIC = 0x54464958;
+
+  public static final int VERSION = 1;
+
+  /** A consumer for the facts read from an index. */
+  public interface FactConsumer {
+    void accept(ReflectiveCallType type, String target, int callSiteCount);
+  }
+
+  /** A consumer for the call sites of the facts read from an index. */
+  private interface CallSiteConsumer {
+    void accept(ReflectiveCallType type, String target, String callSite);
+  }
+
+  private Map<ReflectiveCallType, TreeMap<String, Set<String>>> targetToCallSites;
+
+  public TamiFlexFactsIndex() {
+    targetToCallSites =
+        new EnumMap<ReflectiveCallType, TreeMap<String, Set<String>>>(ReflectiveCallType.class);
+    for (ReflectiveCallType type : ReflectiveCallType.values()) {
+      targetToCallSites.put(type, new TreeMap<String, Set<String>>());
+    }
+  }
+
+  /**
+   * Merge the facts of the given reflection log or facts index into this index.
+   *
+   * @param file
+   * @throws IOException
+   */
+  public void add(Path file) throws IOException {
+    if (isIndex(file)) {
+      addIndex(file);
+    } else {
+      addLog(file);
+    }
+  }
+
+  /**
+   * Merge the facts of the given facts index into this index. A call site that is both in the given
+   * index and in this one is only counted once.
+   *
+   * @param indexFile
+   * @throws IOException
+   */
+  public void addIndex(Path indexFile) throws IOException {
+    read(
+        indexFile,
+        (type, target, callSiteCount) ->
+            targetToCallSites.get(type).computeIfAbsent(target, k -> new HashSet<String>()),
+        (type, target, callSite) -> targetToCallSites.get(type).get(target).add(callSite));
+  }
+
+  /**
+   * Merge the facts of the given reflection log into this index.
+   *
+   * @param log
+   * @throws IOException
+   */
+  public void addLog(Path log) throws IOException {
+    try (BufferedReader in = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = in.readLine()) != null) {
+        addFact(line);
+      }
+    }
+  }
+
+  /**
+   * Add the fact of one line of a reflection log. The columns are the reflective call type, the
+   * target, the calling method and the line number of the call, separated by semicolons.
+   *
+   * @param line
+   */
+  private void addFact(String line) {
+    int typeEnd = line.indexOf(';');
+    if (typeEnd < 0) return;
+    ReflectiveCallType type = ReflectiveCallType.stringToType(line.substring(0, typeEnd));
+    if (type == null) return;
+
+    int targetEnd = line.indexOf(';', typeEnd + 1);
+    String target =
+        targetEnd < 0 ? line.substring(typeEnd + 1) : line.substring(typeEnd + 1, targetEnd);
+    Set<String> callSites =
+        targetToCallSites.get(type).computeIfAbsent(target, k -> new HashSet<String>());
+    if (targetEnd >= 0) {
+      // the call site is the calling method together with the line number
+      int callerEnd = line.indexOf(';', targetEnd + 1);
+      int lineEnd = callerEnd < 0 ? -1 : line.indexOf(';', callerEnd + 1);
+      callSites.add(
+          lineEnd < 0 ? line.substring(targetEnd + 1) : line.substring(targetEnd + 1, lineEnd));
+    }
+  }
+
+  /**
+   * Write this index to the given file.
+   *
+   * @param indexFile
+   * @throws IOException
+   */
+  public void write(Path indexFile) throws IOException {
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+      int count = 0;
+      for (TreeMap<String, Set<String>> facts : targetToCallSites.values()) {
+        count += facts.size();
+      }
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(count);
+      for (ReflectiveCallType type : targetToCallSites.keySet()) {
+        for (Map.Entry<String, Set<String>> fact : targetToCallSites.get(type).entrySet()) {
+          out.writeByte(type.ordinal());
+          out.writeInt(fact.getValue().size());
+          writeString(out, fact.getKey());
+          for (String callSite : new TreeSet<String>(fact.getValue())) {
+            writeString(out, callSite);
+          }
+        }
+      }
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > 0xFFFF) {
+      throw new IOException("String is too long for a facts index: " + s);
+    }
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Check if the given file is a facts index, rather than a text reflection log.
+   *
+   * @param file
+   * @return
+   * @throws IOException
+   */
+  public static boolean isIndex(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(4);
+      while (header.hasRemaining() && channel.read(header) >= 0) {}
+      return !header.hasRemaining() && header.getInt(0) == MAGIC;
+    }
+  }
+
+  /**
+   * Read the facts of the given index file. The file is memory-mapped.
+   *
+   * @param indexFile
+   * @param consumer
+   * @throws IOException if the file is not a facts index or if it is corrupt
+   */
+  public static void read(Path indexFile, FactConsumer consumer) throws IOException {
+    read(indexFile, consumer, null);
+  }
+
+  /**
+   * Read the facts of the given index file, and their call sites if a call site consumer is given.
+   * The fact consumer is called before the call sites of the fact are passed on.
+   *
+   * @param indexFile
+   * @param consumer
+   * @param callSiteConsumer
+   * @throws IOException
+   */
+  private static void read(Path indexFile, FactConsumer consumer, CallSiteConsumer callSiteConsumer)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      try {
+        if (buffer.getInt() != MAGIC) {
+          throw new IOException("Not a TamiFlex facts index: " + indexFile);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+          throw new IOException("Unsupported TamiFlex facts index version " + version);
+        }
+
+        ReflectiveCallType[] types = ReflectiveCallType.values();
+        int count = buffer.getInt();
+        if (count < 0) throw corrupt(indexFile, "negative fact count " + count);
+        for (int i = 0; i < count; i++) {
+          int ordinal = buffer.get();
+          if (ordinal < 0 || ordinal >= types.length) {
+            throw corrupt(indexFile, "unknown reflective call type " + ordinal);
+          }
+          ReflectiveCallType type = types[ordinal];
+          int callSiteCount = buffer.getInt();
+          if (callSiteCount < 0) {
+            throw corrupt(indexFile, "negative call site count " + callSiteCount);
+          }
+          String target = readString(buffer);
+          consumer.accept(type, target, callSiteCount);
+          for (int j = 0; j < callSiteCount; j++) {
+            if (callSiteConsumer == null) {
+              skipString(buffer);
+            } else {
+              callSiteConsumer.accept(type, target, readString(buffer));
+            }
+          }
+        }
+        if (buffer.hasRemaining()) throw corrupt(indexFile, "trailing bytes after the last fact");
+      } catch (BufferUnderflowException | IllegalArgumentException e) {
+        // the file ends before the facts it announces, or a length points past its end
+        throw new IOException(
+            "Corrupt TamiFlex facts index " + indexFile + ": unexpected end of file", e);
+      }
+    }
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void skipString(ByteBuffer buffer) {
+    int length = Short.toUnsignedInt(buffer.getShort());
+    buffer.position(buffer.position() + length);
+  }
+
+  private static IOException corrupt(Path indexFile, String reason) {
+    return new IOException("Corrupt TamiFlex facts index " + indexFile + ": " + reason);
+  }
+
+  /**
+   * Merge the given reflection logs and facts indexes into one index file. All the inputs are read
+   * before the index file is written, so new logs can be merged into an existing index by passing
+   * it both as the index file and as an input.
+   *
+   * @param args the index file, followed by the reflection logs and facts indexes
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: TamiFlexFactsIndex <index file> <refl.log or index file>...");
+      System.exit(1);
+    }
+
+    TamiFlexFactsIndex index = new TamiFlexFactsIndex();
+    for (int i = 1; i < args.length; i++) {
+      index.add(Paths.get(args[i]));
+    }
+    index.write(Paths.get(args[0]));
+  }
+}
@@ -0,0 +1,143 @@
+package averroes.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A matcher for class names that is compiled once from a list of patterns and answers membership
+ * queries without allocating. The patterns follow the syntax of the application regex option:
+ *
+ * <ul>
+ *   <li>pkg.* matches the classes of the package pkg (case-insensitive).
+ *   <li>pkg.** matches the classes of the package pkg and all its sub-packages.
+ *   <li>** matches the classes of the default package.
+ *   <li>Otherwise, the pattern is a fully qualified class name (case-insensitive).
+ * </ul>
+ *
+ * @author Linghui Luo
+ */
+public class ClassNameMatcher {
+
+  /** Trie of packages and class names, keyed by lower case characters. */
+  private Node names;
+
+  /** Trie of super package prefixes, keyed by the exact characters. */
+  private Node prefixes;
+
+  private boolean empty;
+
+  private ClassNameMatcher() {
+    names = new Node();
+    prefixes = new Node();
+    empty = true;
+  }
+
+  /**
+   * Compile the given patterns into a matcher.
+   *
+   * @param patterns
+   * @return
+   */
+  public static ClassNameMatcher compile(Collection<String> patterns) {
+    ClassNameMatcher matcher = new ClassNameMatcher();
+    if (patterns != null) {
+      patterns.forEach(matcher::add);
+    }
+    return matcher;
+  }
+
+  private void add(String pattern) {
+    pattern = pattern.trim();
+    if (pattern.isEmpty()) return;
+    empty = false;
+    if (pattern.endsWith(".*")) {
+      insert(names, pattern.substring(0, pattern.length() - 2), true).isPackage = true;
+    } else if (pattern.endsWith(".**")) {
+      insert(prefixes, pattern.substring(0, pattern.length() - 2), false).isPrefix = true;
+    } else if (pattern.equals("**")) {
+      names.isPackage = true;
+    } else {
+      insert(names, pattern, true).isClass = true;
+    }
+  }
+
+  private Node insert(Node node, String key, boolean ignoreCase) {
+    for (int i = 0; i < key.length(); i++) {
+      char c = key.charAt(i);
+      node = node.getOrCreateChild(ignoreCase ? Character.toLowerCase(c) : c);
+    }
+    return node;
+  }
+
+  /**
+   * Is this matcher compiled from no patterns at all?
+   *
+   * @return
+   */
+  public boolean isEmpty() {
+    return empty;
+  }
+
+  /**
+   * Check if the given fully qualified class name matches any of the patterns.
+   *
+   * @param className
+   * @return
+   */
+  public boolean matches(String className) {
+    return matchesPrefix(className) || matchesName(className);
+  }
+
+  private boolean matchesPrefix(String className) {
+    Node node = prefixes;
+    for (int i = 0; node != null; i++) {
+      if (node.isPrefix) return true;
+      if (i == className.length()) return false;
+      node = node.getChild(className.charAt(i));
+    }
+    return false;
+  }
+
+  private boolean matchesName(String className) {
+    int lastDot = className.lastIndexOf('.');
+    // the root node is marked as package for the default package
+    if (lastDot < 0 && names.isPackage) return true;
+    Node node = names;
+    for (int i = 0; node != null; i++) {
+      if (i == className.length()) return node.isClass;
+      if (i == lastDot && node.isPackage) return true;
+      node = node.getChild(Character.toLowerCase(className.charAt(i)));
+    }
+    return false;
+  }
+
+  private static class Node {
+    private char[] keys = new char[0];
+    private Node[] children = new Node[0];
+    private boolean isPackage;
+    private boolean isPrefix;
+    private boolean isClass;
+
+    private Node getChild(char c) {
+      int i = Arrays.binarySearch(keys, c);
+      return i < 0 ? null : children[i];
+    }
+
+    private Node getOrCreateChild(char c) {
+      int i = Arrays.binarySearch(keys, c);
+      if (i >= 0) return children[i];
+      int pos = -(i + 1);
+      char[] newKeys = new char[keys.length + 1];
+      Node[] newChildren = new Node[children.length + 1];
+      System.arraycopy(keys, 0, newKeys, 0, pos);
+      System.arraycopy(children, 0, newChildren, 0, pos);
+      newKeys[pos] = c;
+      newChildren[pos] = new Node();
+      System.arraycopy(keys, pos, newKeys, pos + 1, keys.length - pos);
+      System.arraycopy(children, pos, newChildren, pos + 1, children.length - pos);
+      keys = newKeys;
+      children = newChildren;
+      return newChildren[pos];
+    }
+  }
+}
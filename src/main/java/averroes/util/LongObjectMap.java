@@ -0,0 +1,78 @@
+package averroes.util;
+
+/**
+ * A hash map from primitive long keys to non-null values. It uses open addressing with linear
+ * probing over two parallel arrays, such that neither the keys nor the entries are boxed.
+ *
+ * @author Linghui Luo
+ */
+public class LongObjectMap<V> {
+
+  private long[] keys;
+  private Object[] values;
+  private int size;
+
+  public LongObjectMap() {
+    keys = new long[32];
+    values = new Object[32];
+    size = 0;
+  }
+
+  /**
+   * Get the value of the given key, or null if there is none.
+   *
+   * @param key
+   * @return
+   */
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    for (int i = indexOf(key, keys.length); values[i] != null; i = (i + 1) & (keys.length - 1)) {
+      if (keys[i] == key) return (V) values[i];
+    }
+    return null;
+  }
+
+  /**
+   * Associate the given value with the given key.
+   *
+   * @param key
+   * @param value
+   * @return the previous value of the key, or null if there was none
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value) {
+    if (value == null) throw new IllegalArgumentException("null values are not supported");
+    int i = indexOf(key, keys.length);
+    for (; values[i] != null; i = (i + 1) & (keys.length - 1)) {
+      if (keys[i] == key) {
+        V old = (V) values[i];
+        values[i] = value;
+        return old;
+      }
+    }
+    keys[i] = key;
+    values[i] = value;
+    if (++size * 2 > keys.length) resize();
+    return null;
+  }
+
+  private void resize() {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    values = new Object[oldValues.length * 2];
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldValues[j] == null) continue;
+      int i = indexOf(oldKeys[j], keys.length);
+      while (values[i] != null) i = (i + 1) & (keys.length - 1);
+      keys[i] = oldKeys[j];
+      values[i] = oldValues[j];
+    }
+  }
+
+  private static int indexOf(long key, int capacity) {
+    // spread the high bits (e.g., a class id) over the low bits
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & (capacity - 1);
+  }
+}
@@ -10,9 +10,12 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import soot.Body;
 import soot.Modifier;
+import soot.SootClass;
 import soot.SootField;
 import soot.SootMethod;
+import soot.Unit;
 import soot.jimple.FieldRef;
+import soot.jimple.Stmt;
 import soot.jimple.toolkits.scalar.LocalNameStandardizer;
 import soot.jimple.toolkits.scalar.NopEliminator;
 import soot.toolkits.scalar.UnusedLocalEliminator;
@@ -49,6 +52,31 @@ public class SootUtils {
     LocalVariableRenamer.transform(body);
   }
 
+  /**
+   * Retrieve the bodies of the concrete methods of the given class and resolve the field and method
+   * references in them. Resolving a reference may add phantom members to the Soot scene, which is
+   * not thread-safe. Once this is done, the bodies can be read concurrently with other classes.
+   *
+   * @param cls
+   */
+  public static void resolveReferences(SootClass cls) {
+    cls.getMethods().stream().filter(SootMethod::isConcrete).forEach(SootUtils::resolveReferences);
+  }
+
+  /**
+   * Retrieve the body of the given concrete method and resolve the field and method references in
+   * it.
+   *
+   * @param method
+   */
+  public static void resolveReferences(SootMethod method) {
+    for (Unit u : method.retrieveActiveBody().getUnits()) {
+      Stmt stmt = (Stmt) u;
+      if (stmt.containsFieldRef()) stmt.getFieldRef().getField();
+      if (stmt.containsInvokeExpr()) stmt.getInvokeExpr().getMethod();
+    }
+  }
+
   /** Perform cleanup for all classes in the model. */
   public static void cleanupClasses() {
     //    removeUnusedFields();
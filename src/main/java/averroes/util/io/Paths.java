@@ -62,7 +62,30 @@ public class Paths {
    * @return
    */
   public static File jimpleOutputFile(PrinterType printerType, SootMethod method) {
-    return dumpFile(jimpleOutputDirectory(printerType), method.getDeclaringClass(), "jimple");
+    return jimpleOutputFile(printerType, method.getDeclaringClass());
+  }
+
+  /**
+   * The path to the file where we output Jimple code of the given class.
+   *
+   * @param printerType
+   * @param cls
+   * @return
+   */
+  public static File jimpleOutputFile(PrinterType printerType, SootClass cls) {
+    return dumpFile(jimpleOutputDirectory(printerType), cls, "jimple");
+  }
+
+  /**
+   * The path to the archive where we output Jimple code if {@link
+   * FrameworksOptions#isJimpleArchive()} is set.
+   *
+   * @param printerType
+   * @return
+   */
+  public static File jimpleArchiveFile(PrinterType printerType) {
+    Path dir = jimpleOutputDirectory(printerType);
+    return dir.resolveSibling(dir.getFileName() + ".zip").toFile();
   }
 
   /**
@@ -173,6 +196,25 @@ public class Paths {
     return new File(AverroesOptions.getOutputDirectory(), "organized-app.jar");
   }
 
+  /**
+   * The path to the annotation index of the application classes.
+   *
+   * @return
+   */
+  public static File annotationIndexFile() {
+    return new File(AverroesOptions.getOutputDirectory(), "annotations.txt");
+  }
+
+  /**
+   * The path to the cache of the basic class files required by Soot. It may be shared by several
+   * runs, the class files generated with different settings are kept in different sub-directories.
+   *
+   * @return
+   */
+  public static File basicClassesCacheDirectory() {
+    return new File(AverroesOptions.getBasicClassesCacheDirectory());
+  }
+
   /**
    * The path to the instrumented application Jar file.
    *
@@ -200,12 +242,19 @@ public class Paths {
   }
 
   /**
-   * Find the Jimple files for the given test case.
+   * Find the Jimple files for the given test case. The Jimple code is not written to files if
+   * {@link FrameworksOptions#isJimpleArchive()} is set, so this fails instead of finding nothing.
    *
    * @param printerType
    * @return
    */
   public static Collection<File> findJimpleFiles(PrinterType printerType) {
+    if (FrameworksOptions.isJimpleArchive()) {
+      throw new IllegalStateException(
+          "The Jimple code is written to "
+              + jimpleArchiveFile(printerType)
+              + " instead of one file per class, run without -ja to compare Jimple files.");
+    }
     return FileUtils.listFiles(
         jimpleOutputDirectory(printerType).toFile(), new String[] {"jimple"}, true);
   }
@@ -221,9 +270,10 @@ public class Paths {
         jsonOutputDirectory(printerType).toFile(), new String[] {"json"}, true);
   }
 
-  /** Delete the directory that contains the Jimple files for the handwritten model. */
+  /** Delete the directory and archive of the Jimple files for the handwritten model. */
   public static void deleteJimpleExpectedDirectory() {
     deleteDirectory(jimpleOutputDirectory(PrinterType.EXPECTED).toFile());
+    FileUtils.deleteQuietly(jimpleArchiveFile(PrinterType.EXPECTED));
   }
 
   /** Delete the directory that contains the JSON files for the handwritten model. */
@@ -231,11 +281,13 @@ public class Paths {
     deleteDirectory(jsonOutputDirectory(PrinterType.EXPECTED).toFile());
   }
 
-  /** Delete the directory that contains the Jimple files for the generated model. */
+  /** Delete the directories and archives of the Jimple files for the generated model. */
   public static void deleteJimpleAnalysisDirectories() {
-    deleteDirectory(jimpleOutputDirectory(PrinterType.ORIGINAL).toFile());
-    deleteDirectory(jimpleOutputDirectory(PrinterType.GENERATED).toFile());
-    deleteDirectory(jimpleOutputDirectory(PrinterType.OPTIMIZED).toFile());
+    for (PrinterType printerType :
+        new PrinterType[] {PrinterType.ORIGINAL, PrinterType.GENERATED, PrinterType.OPTIMIZED}) {
+      deleteDirectory(jimpleOutputDirectory(printerType).toFile());
+      FileUtils.deleteQuietly(jimpleArchiveFile(printerType));
+    }
   }
 
   /** Delete the directory that contains the JSON files for the generated model. */
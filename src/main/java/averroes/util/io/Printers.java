@@ -10,15 +10,31 @@
 /** */
 package averroes.util.io;
 
+import averroes.frameworks.options.FrameworksOptions;
 import averroes.soot.SootSceneUtil;
 import averroes.util.SootUtils;
 import averroes.util.json.JsonUtils;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import soot.SootClass;
 import soot.SootMethod;
 
@@ -29,11 +45,23 @@ import soot.SootMethod;
  */
 public class Printers {
 
-  // The main Gson printer
-  private static Gson gson = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
+  // The Jimple code of the classes that are not completely printed yet, per printer type
+  private static Map<PrinterType, Map<SootClass, ClassJimple>> jimpleBuffer =
+      new ConcurrentHashMap<>();
+
+  // The Jimple code of the completely printed classes, per printer type, for the Jimple archives
+  private static Map<PrinterType, Map<SootClass, String>> jimpleArchiveBuffer =
+      new ConcurrentHashMap<>();
 
   /**
-   * Print out the Jimple representation of the given Soot method.
+   * Print out the Jimple representation of the given Soot method. The code is buffered with the
+   * other methods of its class, and the class is written out at once, in the order its methods are
+   * declared, as soon as all its concrete methods are printed with the same printer type. This may
+   * be called concurrently for different methods.
+   *
+   * <p>After printing, {@link #flushJimple()} must be called to write out the classes of which only
+   * some concrete methods were printed, and the Jimple archives if {@link
+   * FrameworksOptions#isJimpleArchive()} is set.
    *
    * @param printerType
    * @param method
@@ -43,13 +71,168 @@ public class Printers {
       SootUtils.cleanup(method.retrieveActiveBody());
     }
 
-    File jimpleFile = Paths.jimpleOutputFile(printerType, method);
+    String jimple =
+        method.getSignature()
+            + System.lineSeparator()
+            + method.retrieveActiveBody().toString()
+            + System.lineSeparator();
+    String[] classJimple = new String[1];
+    jimpleBuffer
+        .computeIfAbsent(printerType, k -> new ConcurrentHashMap<>())
+        .compute(
+            method.getDeclaringClass(),
+            (cls, printed) -> {
+              if (printed == null) printed = new ClassJimple(cls);
+              if (!printed.add(method, jimple)) return printed;
+              classJimple[0] = toJimple(cls, printed.methodToJimple);
+              return null;
+            });
+    if (classJimple[0] != null) {
+      writeJimple(printerType, method.getDeclaringClass(), classJimple[0]);
+    }
+  }
+
+  /**
+   * Write out the classes of which only some concrete methods were printed, and the Jimple archives
+   * if {@link FrameworksOptions#isJimpleArchive()} is set. This must not be called concurrently
+   * with {@link #printJimple(PrinterType, SootMethod)}.
+   */
+  public static void flushJimple() {
+    for (PrinterType printerType : PrinterType.values()) {
+      Map<SootClass, ClassJimple> classes = jimpleBuffer.remove(printerType);
+      if (classes != null) {
+        classes
+            .entrySet()
+            .parallelStream()
+            .forEach(
+                e ->
+                    writeJimple(
+                        printerType,
+                        e.getKey(),
+                        toJimple(e.getKey(), e.getValue().methodToJimple)));
+      }
+
+      Map<SootClass, String> classToJimple = jimpleArchiveBuffer.remove(printerType);
+      if (classToJimple != null) writeJimpleArchive(printerType, classToJimple);
+    }
+  }
+
+  /**
+   * The Jimple code of the printed methods of a class, and the number of its concrete methods that
+   * are not printed yet. The count is taken when the first method of the class is printed.
+   */
+  private static class ClassJimple {
+    private Map<SootMethod, String> methodToJimple;
+    private int remainingConcreteMethods;
+
+    private ClassJimple(SootClass cls) {
+      methodToJimple = new HashMap<>();
+      remainingConcreteMethods =
+          (int) cls.getMethods().stream().filter(SootMethod::isConcrete).count();
+    }
+
+    /**
+     * Add the Jimple code of the given method.
+     *
+     * @param method
+     * @param jimple
+     * @return true if all the concrete methods of the class are printed
+     */
+    private boolean add(SootMethod method, String jimple) {
+      String previous = methodToJimple.get(method);
+      methodToJimple.put(method, previous == null ? jimple : previous.concat(jimple));
+      if (previous == null && method.isConcrete()) remainingConcreteMethods--;
+      return remainingConcreteMethods <= 0;
+    }
+  }
+
+  /**
+   * Write the Jimple code of the given class to its file, or keep it for the archive of the given
+   * printer type if {@link FrameworksOptions#isJimpleArchive()} is set.
+   *
+   * @param printerType
+   * @param cls
+   * @param jimple
+   */
+  private static void writeJimple(PrinterType printerType, SootClass cls, String jimple) {
+    if (FrameworksOptions.isJimpleArchive()) {
+      jimpleArchiveBuffer
+          .computeIfAbsent(printerType, k -> new ConcurrentHashMap<>())
+          .merge(cls, jimple, String::concat);
+    } else {
+      writeJimpleFile(printerType, cls, jimple);
+    }
+  }
+
+  /**
+   * Join the Jimple code of the given methods of a class, in the order they are declared in the
+   * class.
+   *
+   * @param cls
+   * @param methodToJimple
+   * @return
+   */
+  private static String toJimple(SootClass cls, Map<SootMethod, String> methodToJimple) {
+    StringBuilder jimple = new StringBuilder();
+    for (SootMethod method : cls.getMethods()) {
+      String methodJimple = methodToJimple.remove(method);
+      if (methodJimple != null) jimple.append(methodJimple);
+    }
+    // methods that were removed from the class after they were printed
+    methodToJimple.values().forEach(jimple::append);
+    return jimple.toString();
+  }
+
+  private static void writeJimpleFile(PrinterType printerType, SootClass cls, String jimple) {
+    File jimpleFile = Paths.jimpleOutputFile(printerType, cls);
+    try {
+      Files.write(
+          jimpleFile.toPath(),
+          jimple.getBytes(StandardCharsets.UTF_8),
+          StandardOpenOption.CREATE,
+          StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Write the Jimple code of the given classes to the archive of the given printer type. The
+   * entries of an existing archive are kept, unless they are written again.
+   *
+   * @param printerType
+   * @param classToJimple
+   */
+  private static void writeJimpleArchive(
+      PrinterType printerType, Map<SootClass, String> classToJimple) {
+    File archive = Paths.jimpleArchiveFile(printerType);
+    Map<String, String> entries = new TreeMap<String, String>();
+    classToJimple.forEach((cls, jimple) -> entries.put(cls.getName() + ".jimple", jimple));
+
     try {
-      FileUtils.writeLines(jimpleFile, Collections.singleton(method.getSignature()), true);
-      FileUtils.writeLines(
-          jimpleFile, Collections.singleton(method.retrieveActiveBody().toString()), true);
-      FileUtils.writeLines(jimpleFile, null, true);
-      FileUtils.writeLines(jimpleFile, null, true);
+      File tmpArchive = new File(archive.getPath() + ".tmp");
+      FileUtils.forceMkdirParent(archive);
+      try (ZipOutputStream out =
+          new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(tmpArchive)))) {
+        if (archive.exists()) {
+          try (ZipFile previous = new ZipFile(archive)) {
+            for (ZipEntry entry : Collections.list(previous.entries())) {
+              if (entries.containsKey(entry.getName())) continue;
+              out.putNextEntry(new ZipEntry(entry.getName()));
+              try (InputStream in = previous.getInputStream(entry)) {
+                IOUtils.copy(in, out);
+              }
+              out.closeEntry();
+            }
+          }
+        }
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+          out.putNextEntry(new ZipEntry(entry.getKey()));
+          out.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+          out.closeEntry();
+        }
+      }
+      Files.move(tmpArchive.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
     } catch (IOException e) {
       e.printStackTrace();
     }
@@ -63,17 +246,24 @@ public class Printers {
    */
   public static void printJson(PrinterType printerType, SootClass cls) {
     File jsonFile = Paths.jsonOutputFile(printerType, cls);
-    String json = gson.toJson(JsonUtils.toJson(cls));
-    try {
-      FileUtils.writeLines(jsonFile, Collections.singleton(json));
+    jsonFile.getParentFile().mkdirs();
+    try (Writer out = Files.newBufferedWriter(jsonFile.toPath(), StandardCharsets.UTF_8)) {
+      JsonUtils.writeJson(cls, out);
+      out.write(System.lineSeparator());
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
 
-  /** Print out the JSON representation of all the generated Soot classes. */
+  /**
+   * Print out the JSON representation of all the generated Soot classes. Each class is written to
+   * its own file, so the classes are printed in parallel, after the references in their bodies are
+   * resolved one class after the other.
+   */
   public static void printGeneratedJson() {
-    SootSceneUtil.getClasses().forEach(Printers::printGeneratedJson);
+    Set<SootClass> classes = SootSceneUtil.getClasses();
+    classes.forEach(SootUtils::resolveReferences);
+    classes.parallelStream().forEach(Printers::printGeneratedJson);
   }
 
   /** Print out the JSON representation of all the given generated Soot classes. */
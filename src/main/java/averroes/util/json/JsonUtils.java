@@ -2,13 +2,22 @@ package averroes.util.json;
 
 import com.google.gson.FieldNamingPolicy;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import soot.RefLikeType;
 import soot.SootClass;
+import soot.SootMethod;
 import soot.Type;
 import soot.jimple.AbstractStmtSwitch;
 import soot.jimple.AssignStmt;
@@ -42,43 +51,133 @@ public class JsonUtils {
         .forEach(
             m -> {
               if (m.isConcrete()) {
-                m.retrieveActiveBody()
-                    .getUnits()
-                    .forEach(
-                        u ->
-                            u.apply(
-                                new AbstractStmtSwitch() {
-
-                                  @Override
-                                  public void caseAssignStmt(AssignStmt stmt) {
-                                    // array creations, reads, and writes
-                                    if (stmt.getRightOp() instanceof NewArrayExpr
-                                        || stmt.getRightOp() instanceof NewMultiArrayExpr) {
-                                      sootClassJson.addObjectCreation(
-                                          m, stmt.getRightOp().getType());
-                                    } else if (stmt.getRightOp() instanceof FieldRef
-                                        && stmt.getRightOp().getType() instanceof RefLikeType) {
-                                      sootClassJson.addFieldRead(m, (FieldRef) stmt.getRightOp());
-                                    } else if (stmt.getLeftOp() instanceof FieldRef
-                                        && stmt.getLeftOp().getType() instanceof RefLikeType) {
-                                      sootClassJson.addFieldWrite(m, (FieldRef) stmt.getLeftOp());
-                                    } else if (stmt.getRightOp() instanceof InvokeExpr) {
-                                      sootClassJson.addInvocation(
-                                          m, (InvokeExpr) stmt.getRightOp());
-                                    }
-                                  }
-
-                                  @Override
-                                  public void caseInvokeStmt(InvokeStmt stmt) {
-                                    sootClassJson.addInvocation(m, stmt.getInvokeExpr());
-                                  }
-                                }));
+                forEachFact(m, (fact, value) -> sootClassJson.addFact(fact, m, value));
               }
             });
 
     return sootClassJson;
   }
 
+  /**
+   * Write the JSON representation of the given Soot class to the given writer. The output holds the
+   * same facts as {@link #toJson(SootClass)} serialized by Gson, but it is written with a {@link
+   * JsonWriter} instead of being built as one string. Since the facts are grouped by kind, the body
+   * of each method is visited once and the facts of the whole class are buffered per kind before
+   * anything is written, so only the serialization is streamed. The methods are written in the
+   * order they are declared and the facts of each method in the order they first appear in its
+   * body, while Gson writes the hash maps of {@link SootClassJson} in hash order. {@link
+   * #fromJson(File)} reads both the same way.
+   *
+   * @param cls
+   * @param out
+   * @throws IOException
+   */
+  public static void writeJson(SootClass cls, Writer out) throws IOException {
+    Map<CodeFact, Map<String, Set<String>>> factToMethods =
+        new EnumMap<CodeFact, Map<String, Set<String>>>(CodeFact.class);
+    for (CodeFact fact : CodeFact.values()) {
+      factToMethods.put(fact, new LinkedHashMap<String, Set<String>>());
+    }
+    for (SootMethod m : cls.getMethods()) {
+      if (!m.isConcrete() || SootClassJson.isSynthetic(m)) continue;
+      String signature = m.getSignature();
+      forEachFact(
+          m,
+          (fact, value) ->
+              factToMethods
+                  .get(fact)
+                  .computeIfAbsent(signature, k -> new LinkedHashSet<String>())
+                  .add(value));
+    }
+
+    JsonWriter json = new JsonWriter(out);
+    json.setIndent("  ");
+    json.beginObject();
+    for (CodeFact fact : CodeFact.values()) {
+      json.name(fact.fieldName()).beginObject();
+      for (Map.Entry<String, Set<String>> method : factToMethods.get(fact).entrySet()) {
+        json.name(method.getKey()).beginArray();
+        for (String value : method.getValue()) {
+          json.value(value);
+        }
+        json.endArray();
+      }
+      json.endObject();
+    }
+    json.endObject();
+    json.flush();
+  }
+
+  /**
+   * Pass each fact of the body of the given method to the given consumer. The textual
+   * representations are interned, because the same types, fields and methods show up in many
+   * methods.
+   *
+   * @param m
+   * @param consumer
+   */
+  private static void forEachFact(SootMethod m, BiConsumer<CodeFact, String> consumer) {
+    m.retrieveActiveBody()
+        .getUnits()
+        .forEach(
+            u ->
+                u.apply(
+                    new AbstractStmtSwitch() {
+
+                      @Override
+                      public void caseAssignStmt(AssignStmt stmt) {
+                        // array creations, reads, and writes
+                        if (stmt.getRightOp() instanceof NewArrayExpr
+                            || stmt.getRightOp() instanceof NewMultiArrayExpr) {
+                          consumer.accept(
+                              CodeFact.OBJECT_CREATIONS,
+                              toJson(stmt.getRightOp().getType()).intern());
+                        } else if (stmt.getRightOp() instanceof FieldRef
+                            && stmt.getRightOp().getType() instanceof RefLikeType) {
+                          consumer.accept(
+                              CodeFact.FIELD_READS, toJson((FieldRef) stmt.getRightOp()).intern());
+                        } else if (stmt.getLeftOp() instanceof FieldRef
+                            && stmt.getLeftOp().getType() instanceof RefLikeType) {
+                          consumer.accept(
+                              CodeFact.FIELD_WRITES, toJson((FieldRef) stmt.getLeftOp()).intern());
+                        } else if (stmt.getRightOp() instanceof InvokeExpr) {
+                          consumer.accept(
+                              CodeFact.INVOCATIONS,
+                              toJson((InvokeExpr) stmt.getRightOp()).intern());
+                        }
+                      }
+
+                      @Override
+                      public void caseInvokeStmt(InvokeStmt stmt) {
+                        consumer.accept(
+                            CodeFact.INVOCATIONS, toJson(stmt.getInvokeExpr()).intern());
+                      }
+                    }));
+  }
+
+  /** The kinds of facts in the JSON representation of a Soot class. */
+  public enum CodeFact {
+    OBJECT_CREATIONS("methodToObjectCreations"),
+    INVOCATIONS("methodToInvocations"),
+    FIELD_READS("methodToFieldReads"),
+    FIELD_WRITES("methodToFieldWrites");
+
+    private String fieldName;
+
+    CodeFact(String fieldName) {
+      this.fieldName = fieldName;
+    }
+
+    /**
+     * The name of the corresponding field in {@link SootClassJson}.
+     *
+     * @return
+     */
+    public String fieldName() {
+      return fieldName;
+    }
+  }
+
   /**
    * Create a SootClassJson from a JSON text file.
    *
@@ -36,10 +36,38 @@ public class SootClassJson {
    * @param method
    * @return
    */
-  private static boolean isSynthetic(SootMethod method) {
+  static boolean isSynthetic(SootMethod method) {
     return Modifier.isSynthetic(method.getModifiers());
   }
 
+  /**
+   * Add a fact, given by its JSON textual representation.
+   *
+   * @param fact
+   * @param method
+   * @param value
+   */
+  public void addFact(JsonUtils.CodeFact fact, SootMethod method, String value) {
+    if (!isSynthetic(method)) {
+      HashMap<String, HashSet<String>> methodToFacts;
+      switch (fact) {
+        case OBJECT_CREATIONS:
+          methodToFacts = methodToObjectCreations;
+          break;
+        case INVOCATIONS:
+          methodToFacts = methodToInvocations;
+          break;
+        case FIELD_READS:
+          methodToFacts = methodToFieldReads;
+          break;
+        default:
+          methodToFacts = methodToFieldWrites;
+          break;
+      }
+      methodToFacts.computeIfAbsent(method.getSignature(), k -> new HashSet<String>()).add(value);
+    }
+  }
+
   /**
    * Add an object creation.
    *
@@ -3,6 +3,7 @@ package soot.coffi;
 import averroes.options.AverroesOptions;
 import averroes.soot.ClassFileProvider;
 import averroes.soot.Hierarchy;
+import averroes.soot.Names;
 import averroes.util.BytecodeUtils;
 import averroes.util.DexUtils;
 import java.io.File;
@@ -36,6 +37,8 @@ public class AverroesApplicationConstantPool {
   private Set<SootClass> applicationClasses;
   private Set<SootMethod> libraryMethods;
   private Set<SootField> libraryFields;
+  private Set<SootClass> beanRetrievalClasses;
+  private Set<SootClass> libraryClasses;
   private Hierarchy hierarchy;
   private Logger logger = LoggerFactory.getLogger(getClass());
   /**
@@ -48,6 +51,8 @@ public class AverroesApplicationConstantPool {
     applicationClasses = new HashSet<SootClass>();
     libraryMethods = new HashSet<SootMethod>();
     libraryFields = new HashSet<SootField>();
+    beanRetrievalClasses = new HashSet<SootClass>();
+    libraryClasses = new HashSet<SootClass>();
 
     this.hierarchy = hierarchy;
 
@@ -93,6 +98,28 @@ public class AverroesApplicationConstantPool {
     return applicationClasses;
   }
 
+  /**
+   * Get the set of application classes whose constant pool references a method that retrieves a
+   * bean (e.g., getBean). Only those classes can contain calls that {@link
+   * averroes.soot.CodeGenerator#replaceBeanRetrieval()} rewrites. This is not computed for Android
+   * apps.
+   *
+   * @return
+   */
+  public Set<SootClass> getBeanRetrievalClasses() {
+    return beanRetrievalClasses;
+  }
+
+  /**
+   * Get the set of library classes that appear in the constant pool of any application class (e.g.,
+   * in new, checkcast or instanceof instructions). This is not computed for Android apps.
+   *
+   * @return
+   */
+  public Set<SootClass> getLibraryClasses() {
+    return libraryClasses;
+  }
+
   /**
    * Check if the given field is a library field referenced by the application.
    *
@@ -130,55 +157,54 @@ public class AverroesApplicationConstantPool {
     Set<SootMethod> result = new HashSet<SootMethod>();
 
     /*
-     * This is only useful if the application class has any methods. Some classes
+     * Methods are only referenced if the application class has any methods. Some classes
      * will not have any methods in them, e.g., org.jfree.data.xml.DatasetTags which
-     * is an interface that has some final constants only.
+     * is an interface that has some final constants only. Their constant pool is still
+     * scanned for library classes, e.g., their superinterfaces, since the library pruning
+     * keeps only the library classes referenced by the application.
      */
-    if (applicationClass.getMethodCount() > 0) {
-      ClassFile coffiClass = getCoffiClass(applicationClass);
-      cp_info[] constantPool = coffiClass.constant_pool;
+    boolean hasMethods = applicationClass.getMethodCount() > 0;
+    ClassFile coffiClass = getCoffiClass(applicationClass);
+    cp_info[] constantPool = coffiClass.constant_pool;
+
+    for (cp_info constantPoolEntry : constantPool) {
+      if (constantPoolEntry instanceof CONSTANT_Class_info) {
+        findLibraryClassInConstantPool(constantPool, (CONSTANT_Class_info) constantPoolEntry);
+      } else if (hasMethods && constantPoolEntry instanceof ICONSTANT_Methodref_info) {
+        ICONSTANT_Methodref_info methodInfo = (ICONSTANT_Methodref_info) constantPoolEntry;
+        // Get the method declaring class
+        CONSTANT_Class_info c = (CONSTANT_Class_info) constantPool[methodInfo.getClassIndex()];
+        if (c == null) continue;
+        CONSTANT_Utf8_info cName = (CONSTANT_Utf8_info) (constantPool[c.name_index]);
+        if (cName == null) continue;
+        String className = cName.convert();
+        className = className.replace('/', '.');
+        // TODO why is that?
+        if (className.charAt(0) == '[') {
+          className = "java.lang.Object";
+        }
+        // Get the method name, parameter types, and return type
+        CONSTANT_NameAndType_info i =
+            (CONSTANT_NameAndType_info) constantPool[methodInfo.getNameAndTypeIndex()];
+        if (i != null) {
 
-      for (cp_info constantPoolEntry : constantPool) {
-        if (constantPoolEntry instanceof ICONSTANT_Methodref_info) {
-          ICONSTANT_Methodref_info methodInfo = (ICONSTANT_Methodref_info) constantPoolEntry;
-          // Get the method declaring class
-          CONSTANT_Class_info c = (CONSTANT_Class_info) constantPool[methodInfo.getClassIndex()];
-          if (c == null) continue;
-          CONSTANT_Utf8_info cName = (CONSTANT_Utf8_info) (constantPool[c.name_index]);
-          if (cName == null) continue;
-          String className = cName.convert();
-          className = className.replace('/', '.');
-          // TODO why is that?
-          if (className.charAt(0) == '[') {
-            className = "java.lang.Object";
-          }
-          // Get the method name, parameter types, and return type
-          CONSTANT_NameAndType_info i =
-              (CONSTANT_NameAndType_info) constantPool[methodInfo.getNameAndTypeIndex()];
-          if (i != null) {
-
-            CONSTANT_Utf8_info utfMethodName = (CONSTANT_Utf8_info) constantPool[i.name_index];
-
-            if (utfMethodName != null) {
-              String methodName = utfMethodName.convert();
-              CONSTANT_Utf8_info utfDescriptor =
-                  (CONSTANT_Utf8_info) (constantPool[i.descriptor_index]);
-              if (utfDescriptor != null) {
-                String methodDescriptor = utfDescriptor.convert();
-                SootMethod method =
-                    BytecodeUtils.makeSootMethod(className, methodName, methodDescriptor);
-                // If the resolved method is in the library, add it to the
-                // result
-                if (hierarchy.isLibraryMethod(method)) {
-                  result.add(method);
-                }
-              } else {
-                logger.info(
-                    "AverroesApplicationConstantPool: couldn't resolve some method in "
-                        + className
-                        + " referenced by "
-                        + applicationClass
-                        + ". method descriptor is null.");
+          CONSTANT_Utf8_info utfMethodName = (CONSTANT_Utf8_info) constantPool[i.name_index];
+
+          if (utfMethodName != null) {
+            String methodName = utfMethodName.convert();
+            if (Names.isBeanRetrievalMethodName(methodName)) {
+              beanRetrievalClasses.add(applicationClass);
+            }
+            CONSTANT_Utf8_info utfDescriptor =
+                (CONSTANT_Utf8_info) (constantPool[i.descriptor_index]);
+            if (utfDescriptor != null) {
+              String methodDescriptor = utfDescriptor.convert();
+              SootMethod method =
+                  BytecodeUtils.makeSootMethod(className, methodName, methodDescriptor);
+              // If the resolved method is in the library, add it to the
+              // result
+              if (hierarchy.isLibraryMethod(method)) {
+                result.add(method);
               }
             } else {
               logger.info(
@@ -186,7 +212,7 @@ public class AverroesApplicationConstantPool {
                       + className
                       + " referenced by "
                       + applicationClass
-                      + ". method name is null.");
+                      + ". method descriptor is null.");
             }
           } else {
             logger.info(
@@ -194,8 +220,15 @@ public class AverroesApplicationConstantPool {
                     + className
                     + " referenced by "
                     + applicationClass
-                    + ". method is null.");
+                    + ". method name is null.");
           }
+        } else {
+          logger.info(
+              "AverroesApplicationConstantPool: couldn't resolve some method in "
+                  + className
+                  + " referenced by "
+                  + applicationClass
+                  + ". method is null.");
         }
       }
     }
@@ -203,6 +236,31 @@ public class AverroesApplicationConstantPool {
     return result;
   }
 
+  /**
+   * Record the given class constant pool entry if it refers to a library class. Array classes are
+   * recorded by their element type.
+   *
+   * @param constantPool
+   * @param classInfo
+   */
+  private void findLibraryClassInConstantPool(
+      cp_info[] constantPool, CONSTANT_Class_info classInfo) {
+    CONSTANT_Utf8_info cName = (CONSTANT_Utf8_info) constantPool[classInfo.name_index];
+    if (cName == null) return;
+    String className = cName.convert();
+    int dimensions = 0;
+    while (className.charAt(dimensions) == '[') dimensions++;
+    if (dimensions > 0) {
+      // primitive arrays do not refer to any class
+      if (className.charAt(dimensions) != 'L') return;
+      className = className.substring(dimensions + 1, className.length() - 1);
+    }
+    SootClass cls = hierarchy.getClass(className.replace('/', '.'));
+    if (cls != null && hierarchy.isLibraryClass(cls)) {
+      libraryClasses.add(cls);
+    }
+  }
+
   /**
    * Find all the classes whose name is referenced in the constant pool of application classes.
    *
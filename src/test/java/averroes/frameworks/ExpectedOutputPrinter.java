@@ -49,6 +49,7 @@ public class ExpectedOutputPrinter {
               m -> {
                 Printers.printJimple(PrinterType.EXPECTED, m);
               });
+      Printers.flushJimple();
 
       // Print out JSON files
       SootSceneUtil.getClasses()
@@ -0,0 +1,87 @@
+package averroes.frameworks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import averroes.frameworks.analysis.XtaJimpleBody;
+import averroes.tests.CommonOptions;
+import averroes.util.io.Paths;
+import averroes.util.io.Printers.PrinterType;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class JimpleArchiveTest {
+
+  private static final String TEST_CASE = "ll";
+
+  /** The Jimple archive holds the same code as the per-class Jimple files. */
+  @Test
+  public void testSameAsJimpleFiles() throws IOException {
+    run(false);
+    Map<String, String> expected = new TreeMap<>();
+    for (File file : Paths.findJimpleFiles(PrinterType.GENERATED)) {
+      expected.put(file.getName(), FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+    }
+
+    run(true);
+    Map<String, String> actual = new TreeMap<>();
+    try (ZipFile archive = new ZipFile(Paths.jimpleArchiveFile(PrinterType.GENERATED))) {
+      for (ZipEntry entry : Collections.list(archive.entries())) {
+        actual.put(
+            entry.getName(),
+            IOUtils.toString(archive.getInputStream(entry), StandardCharsets.UTF_8));
+      }
+    }
+
+    assertFalse(expected.isEmpty());
+    assertEquals(expected, actual);
+  }
+
+  /** The comparisons of the Jimple files must not silently compare nothing with -ja. */
+  @Test
+  public void testFindJimpleFilesFailsWithArchive() throws IOException {
+    run(true);
+    try {
+      Paths.findJimpleFiles(PrinterType.GENERATED);
+      fail("Expected an IllegalStateException with -ja");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  private static void run(boolean archive) throws IOException {
+    File output = new File("target", "jimple-archive-" + TEST_CASE);
+    FileUtils.deleteQuietly(output);
+
+    List<String> args = new ArrayList<>();
+    args.addAll(
+        Arrays.asList(
+            "-i",
+            CommonOptions.getInputProject(TEST_CASE),
+            "-p",
+            "averroes.testsuite." + TEST_CASE + ".input",
+            "-o",
+            output.getPath(),
+            "-j",
+            CommonOptions.jre,
+            "-a",
+            XtaJimpleBody.name));
+    if (archive) {
+      args.add("-ja");
+    }
+    Main.main(args.toArray(new String[0]));
+  }
+}
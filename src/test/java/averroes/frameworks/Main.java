@@ -73,6 +73,7 @@ public class Main {
       LoggerFactory.getLogger(averroes.frameworks.Main.class)
           .info("Creating Jimple bodies for framework methods...");
       CodeGenerator.generateJimple();
+      Printers.flushJimple();
 
       LoggerFactory.getLogger(averroes.frameworks.Main.class)
           .info("Writing JSON files for framework methods...");
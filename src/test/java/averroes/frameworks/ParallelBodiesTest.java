@@ -0,0 +1,110 @@
+package averroes.frameworks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import averroes.frameworks.analysis.RtaJimpleBody;
+import averroes.frameworks.analysis.XtaJimpleBody;
+import averroes.tests.CommonOptions;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class ParallelBodiesTest {
+
+  private static final List<String> TEST_CASES =
+      Arrays.asList("ll", "anonymousclasses", "nestedclasses", "arrays3", "exceptions");
+
+  /** Generating the RTA bodies in parallel must produce the same JSON and Jimple files. */
+  @Test
+  public void testRtaSameAsSequential() throws IOException {
+    for (String testCase : TEST_CASES) {
+      assertSameOutput(testCase, RtaJimpleBody.name);
+    }
+  }
+
+  /**
+   * Generating the XTA bodies in parallel must produce the same JSON and Jimple files, including
+   * the set_m fields that are added to the input classes before the bodies are generated.
+   */
+  @Test
+  public void testXtaSameAsSequential() throws IOException {
+    for (String testCase : TEST_CASES) {
+      assertSameOutput(testCase, XtaJimpleBody.name);
+    }
+  }
+
+  private static void assertSameOutput(String testCase, String analysis) throws IOException {
+    Path sequential = run(testCase, analysis, false);
+    Path parallel = run(testCase, analysis, true);
+
+    for (String format : Arrays.asList("json", "jimple")) {
+      Map<String, String> expected = readFiles(sequential.resolve(format));
+      Map<String, String> actual = readFiles(parallel.resolve(format));
+      assertFalse(testCase + " " + analysis + " " + format, expected.isEmpty());
+      assertEquals(testCase + " " + analysis + " " + format, expected.keySet(), actual.keySet());
+      for (Map.Entry<String, String> entry : expected.entrySet()) {
+        assertEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+      }
+    }
+  }
+
+  private static Path run(String testCase, String analysis, boolean parallel) throws IOException {
+    File output =
+        new File(
+            "target",
+            "parallel-bodies-"
+                + testCase
+                + "-"
+                + analysis
+                + (parallel ? "-parallel" : "-sequential"));
+    FileUtils.deleteQuietly(output);
+
+    List<String> args = new ArrayList<>();
+    args.addAll(
+        Arrays.asList(
+            "-i",
+            CommonOptions.getInputProject(testCase),
+            "-p",
+            "averroes.testsuite." + testCase + ".input",
+            "-o",
+            output.getPath(),
+            "-j",
+            CommonOptions.jre,
+            "-a",
+            analysis));
+    if (parallel) {
+      args.add("-pb");
+    }
+    Main.main(args.toArray(new String[0]));
+
+    return output.toPath();
+  }
+
+  /** Read the contents of all the files under the given directory, by their relative paths. */
+  private static Map<String, String> readFiles(Path dir) throws IOException {
+    Map<String, String> result = new TreeMap<>();
+    if (!Files.isDirectory(dir)) {
+      return result;
+    }
+    try (Stream<Path> files = Files.walk(dir)) {
+      for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+        result.put(
+            dir.relativize(file).toString(),
+            new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+      }
+    }
+    return result;
+  }
+}
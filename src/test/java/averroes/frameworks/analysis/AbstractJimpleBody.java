@@ -76,6 +76,7 @@ import soot.tagkit.InnerClassTag;
 public abstract class AbstractJimpleBody {
   protected static IntConstant ARRAY_LENGTH = IntConstant.v(1);
   protected static IntConstant ARRAY_INDEX = IntConstant.v(0);
+  private static final Object CLEANUP_LOCK = new Object();
   private final Logger logger = LoggerFactory.getLogger(getClass());
   protected SootMethod method;
   protected JimpleBody originalBody;
@@ -147,11 +148,15 @@ public abstract class AbstractJimpleBody {
     handleExceptions();
     insertJimpleBodyFooter();
 
-    // Cleanup the generated body
-    SootUtils.cleanup(body);
+    // Cleanup and validate the generated body. The cleanup uses singleton Soot transformers and
+    // phase options, and the validators may query the Soot scene, neither of which is thread-safe,
+    // so bodies that are generated in parallel are cleaned up one at a time.
+    synchronized (CLEANUP_LOCK) {
+      SootUtils.cleanup(body);
+      body.validate();
+    }
 
-    // Validate method Jimple body & assign it to the method
-    body.validate();
+    // Assign the Jimple body to the method
     method.setActiveBody(body);
 
     Printers.printJimple(PrinterType.GENERATED, method);
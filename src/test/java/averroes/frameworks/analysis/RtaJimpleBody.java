@@ -64,6 +64,21 @@ public class RtaJimpleBody extends AbstractJimpleBody {
 
   @Override
   protected void ensureCommonClassExists() {
+    ensureRtaClassExists();
+  }
+
+  /**
+   * Ensure that everything the generated code of the given method shares with other methods exists.
+   * For RTA, this is only the class rta.RTA.
+   *
+   * @param method
+   */
+  public static void ensureSharedStructuresExist(SootMethod method) {
+    ensureRtaClassExists();
+  }
+
+  /** Ensures that the class rta.RTA exists, along with its fields. */
+  private static void ensureRtaClassExists() {
     if (Scene.v().containsClass(Names.RTA_CLASS)) {
       return;
     }
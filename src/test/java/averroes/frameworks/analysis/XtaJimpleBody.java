@@ -70,6 +70,22 @@ public class XtaJimpleBody extends AbstractJimpleBody {
 
   @Override
   protected void ensureCommonClassExists() {
+    ensureXtaClassExists();
+  }
+
+  /**
+   * Ensure that everything the generated code of the given method shares with other methods exists:
+   * the class xta.XTA and the set_m field of the method.
+   *
+   * @param method
+   */
+  public static void ensureSharedStructuresExist(SootMethod method) {
+    ensureXtaClassExists();
+    ensureSetMExists(method);
+  }
+
+  /** Ensures that the class xta.XTA exists, along with its fields. */
+  private static void ensureXtaClassExists() {
     if (Scene.v().containsClass(Names.XTA_CLASS)) {
       return;
     }
@@ -166,8 +182,8 @@ public class XtaJimpleBody extends AbstractJimpleBody {
    */
   private SootFieldRef getSetM() {
     if (setM == null) {
-      ensureSetMExists();
-      setM = method.getDeclaringClass().getFieldByName(setMName()).makeRef();
+      ensureSetMExists(method);
+      setM = method.getDeclaringClass().getFieldByName(setMName(method)).makeRef();
     }
 
     return setM;
@@ -217,10 +233,14 @@ public class XtaJimpleBody extends AbstractJimpleBody {
   // }
   // }
 
-  /** Ensures that the declaring class of the given Soot method declares the set_m field. */
-  private void ensureSetMExists() {
+  /**
+   * Ensures that the declaring class of the given Soot method declares the set_m field.
+   *
+   * @param method
+   */
+  private static void ensureSetMExists(SootMethod method) {
     SootClass cls = method.getDeclaringClass();
-    String name = setMName();
+    String name = setMName(method);
 
     if (!cls.declaresFieldByName(name)) {
       int modifiers = Modifier.PRIVATE | (method.isStatic() ? Modifier.STATIC : 0);
@@ -244,9 +264,10 @@ public class XtaJimpleBody extends AbstractJimpleBody {
    * raise an exception when we try to add a field for the 2nd overload of the method because a
    * field with the name set_m_methodname has already been added to the class.
    *
+   * @param method
    * @return
    */
-  private String setMName() {
+  private static String setMName(SootMethod method) {
     return Names.SET_METHOD_PREFIX + method.getDeclaringClass().getMethods().indexOf(method);
   }
 }
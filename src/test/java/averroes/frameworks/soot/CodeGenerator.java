@@ -6,9 +6,11 @@ import averroes.frameworks.analysis.XtaJimpleBody;
 import averroes.frameworks.options.FrameworksOptions;
 import averroes.soot.Names;
 import averroes.soot.SootSceneUtil;
+import averroes.util.SootUtils;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
+import soot.ArrayType;
 import soot.DoubleType;
 import soot.FloatType;
 import soot.LongType;
@@ -37,6 +39,9 @@ import soot.jimple.NullConstant;
  */
 public class CodeGenerator {
 
+  /** The number of methods that are prepared before their bodies are generated in parallel. */
+  private static final int PARALLEL_BATCH_SIZE = 1024;
+
   /**
    * Generate Jimple for all classes that Averroes has processed.
    *
@@ -46,12 +51,62 @@ public class CodeGenerator {
   public static void generateJimple() {
     // We ignore non-concrete methods, because they do not have method bodies
     // (surprise!).
-    SootSceneUtil.getClasses().stream()
-        .map(SootClass::getMethods)
-        .flatMap(List::stream)
-        .filter(SootMethod::isConcrete)
-        .collect(Collectors.toList())
-        .forEach(m -> getJimpleBodyCreator(m).generateCode());
+    List<SootMethod> methods =
+        SootSceneUtil.getClasses().stream()
+            .map(SootClass::getMethods)
+            .flatMap(List::stream)
+            .filter(SootMethod::isConcrete)
+            .collect(Collectors.toList());
+
+    if (FrameworksOptions.isParallelBodies()) {
+      generateJimpleInParallel(methods);
+    } else {
+      methods.forEach(m -> getJimpleBodyCreator(m).generateCode());
+    }
+  }
+
+  /**
+   * Generate Jimple for the given methods concurrently, in batches of {@link #PARALLEL_BATCH_SIZE}
+   * methods. Each batch is done in two phases. First, the methods are prepared sequentially (see
+   * {@link #prepareParallelGeneration(SootMethod)}), because that modifies the Soot scene. Second,
+   * the body creators of the batch are created and generate the bodies in parallel on the common
+   * fork/join pool. They only read the Soot scene, except for the cleanup and validation of the
+   * generated bodies, which {@link AbstractJimpleBody#generateCode()} does one body at a time. The
+   * batches bound the number of original bodies that are retrieved ahead of their generation. The
+   * Jimple output is buffered per class and written in declaration order once all the methods of
+   * the class are printed (see {@link averroes.util.io.Printers#printJimple}), so it does not
+   * depend on the order the bodies are generated in.
+   *
+   * @param methods
+   */
+  private static void generateJimpleInParallel(List<SootMethod> methods) {
+    // ArrayType.v caches array types in their element type, create the one the generated code
+    // casts the set to for array reads and writes up front.
+    ArrayType.v(Scene.v().getObjectType(), 1);
+
+    for (int from = 0; from < methods.size(); from += PARALLEL_BATCH_SIZE) {
+      List<SootMethod> batch =
+          methods.subList(from, Math.min(from + PARALLEL_BATCH_SIZE, methods.size()));
+      batch.forEach(CodeGenerator::prepareParallelGeneration);
+      batch.parallelStream().forEach(m -> getJimpleBodyCreator(m).generateCode());
+    }
+  }
+
+  /**
+   * Prepare the given method for generating its body in parallel with other methods. This creates
+   * the common class and any fields of the analysis that the generated code of the method uses,
+   * retrieves the original method body, and resolves the field and method references in it, which
+   * may add phantom members to the Soot scene.
+   *
+   * @param method
+   */
+  private static void prepareParallelGeneration(SootMethod method) {
+    if (FrameworksOptions.getAnalysis().equalsIgnoreCase("xta")) {
+      XtaJimpleBody.ensureSharedStructuresExist(method);
+    } else {
+      RtaJimpleBody.ensureSharedStructuresExist(method);
+    }
+    SootUtils.resolveReferences(method);
   }
 
   /**
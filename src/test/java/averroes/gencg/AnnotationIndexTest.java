@@ -0,0 +1,48 @@
+package averroes.gencg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import averroes.soot.Hierarchy;
+import averroes.soot.HierarchyFixture;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+import soot.SootClass;
+
+public class AnnotationIndexTest {
+
+  private static final String COMPONENT = "averroes.testsuite.stereotype.lib.Component";
+  private static final String CONTROLLER = "averroes.testsuite.stereotype.lib.Controller";
+  private static final String REST_CONTROLLER = "averroes.testsuite.stereotype.lib.RestController";
+  private static final String ENDPOINT = "averroes.testsuite.stereotype.app.Endpoint";
+
+  /**
+   * The application class is annotated with a library stereotype that reaches the configured
+   * annotation through another library stereotype. Soot does not resolve RestController, which is
+   * only used in an annotation. Controller is resolved, but the cleanup removes its tags. So the
+   * chain must be resolved from what was indexed before the cleanup.
+   */
+  @Test
+  public void testLibraryStereotypeChain() throws Exception {
+    Hierarchy hierarchy =
+        HierarchyFixture.load("stereotype", Collections.singletonList(CONTROLLER));
+    SootClass controller = hierarchy.getClass(CONTROLLER);
+    assertNotNull(controller);
+    assertTrue(hierarchy.isLibraryClass(controller));
+    hierarchy.cleanupLibraryClasses();
+    assertFalse(controller.hasTag("VisibilityAnnotationTag"));
+
+    AnnotationIndex index = hierarchy.getAnnotationIndex();
+    Set<String> annotations = Collections.singleton(COMPONENT);
+    Map<String, String> roots = index.getMetaAnnotationRoots(annotations);
+    assertEquals(COMPONENT, roots.get(CONTROLLER));
+    assertEquals(COMPONENT, roots.get(REST_CONTROLLER));
+    assertEquals(
+        Collections.singletonList(hierarchy.getClass(ENDPOINT)),
+        index.getAnnotatedClasses(roots.keySet()));
+  }
+}
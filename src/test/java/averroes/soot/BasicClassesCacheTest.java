@@ -0,0 +1,92 @@
+package averroes.soot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import soot.SootClass;
+
+public class BasicClassesCacheTest {
+
+  private static final File OUTPUT = new File("target", "basic-classes-cache");
+
+  /**
+   * The basic classes copied from the cache in a second run are the same as the ones generated
+   * without the cache, and the cached class files are not generated again.
+   */
+  @Test
+  public void testSecondRunCopiesIdenticalBytes() throws IOException {
+    FileUtils.deleteQuietly(OUTPUT);
+    File cache = new File(OUTPUT, "cache");
+    Hierarchy hierarchy =
+        HierarchyFixture.load("prune", Collections.emptyList(), "-bc", cache.getAbsolutePath());
+    // the body of java.lang.ref.Finalizer stores into the fields of the Averroes library class
+    CodeGenerator.v().createAverroesLibraryClass();
+    SootBasicClassesDatabase database = hierarchy.getBasicClassesDatabase();
+
+    File generatedDir = new File(OUTPUT, "generated");
+    for (SootClass basicClass : database.getMissingBasicClasses()) {
+      CodeGenerator.writeClassFile(generatedDir.getPath(), basicClass);
+    }
+    Map<String, byte[]> generated = read(generatedDir);
+    Map<String, byte[]> first = write(database, new File(OUTPUT, "first"));
+    Map<String, Long> cached = lastModified(cache);
+    Map<String, byte[]> second = write(database, new File(OUTPUT, "second"));
+
+    assertFalse(generated.isEmpty());
+    assertSameBytes(generated, first);
+    assertSameBytes(generated, second);
+    assertEquals(generated.size(), cached.size());
+    assertEquals(cached, lastModified(cache));
+  }
+
+  private static Map<String, byte[]> write(SootBasicClassesDatabase database, File outputDir)
+      throws IOException {
+    database.writeMissingBasicClasses(outputDir);
+    return read(outputDir);
+  }
+
+  private static Map<String, byte[]> read(File outputDir) throws IOException {
+    Map<String, byte[]> result = new TreeMap<>();
+    for (Path file : classFiles(outputDir)) {
+      result.put(outputDir.toPath().relativize(file).toString(), Files.readAllBytes(file));
+    }
+    return result;
+  }
+
+  private static Map<String, Long> lastModified(File dir) throws IOException {
+    Map<String, Long> result = new TreeMap<>();
+    for (Path file : classFiles(dir)) {
+      result.put(dir.toPath().relativize(file).toString(), file.toFile().lastModified());
+    }
+    return result;
+  }
+
+  private static List<Path> classFiles(File dir) throws IOException {
+    try (Stream<Path> files = Files.walk(dir.toPath())) {
+      return files
+          .filter(f -> f.toString().endsWith(".class"))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private static void assertSameBytes(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+    assertEquals(expected.keySet(), actual.keySet());
+    for (String file : expected.keySet()) {
+      assertArrayEquals(file, expected.get(file), actual.get(file));
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package averroes.soot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Test;
+import soot.RefLikeType;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+
+public class CleanupLibraryTest {
+
+  private static final String TASK = "averroes.testsuite.cleanup.lib.Task";
+  private static final String SIMPLE_TASK = "averroes.testsuite.cleanup.lib.SimpleTask";
+  private static final String REGISTRY = "averroes.testsuite.cleanup.lib.Registry";
+
+  /**
+   * The cleanup finds the removable members in parallel, but it must remove the same methods as
+   * cleaning up the library classes one after the other, supertypes first.
+   */
+  @Test
+  public void testSameMethodsAsSequentialCleanup() throws Exception {
+    Hierarchy hierarchy = HierarchyFixture.load("cleanup", Collections.emptyList());
+    int methodCount =
+        hierarchy.getLibraryClasses().stream().mapToInt(SootClass::getMethodCount).sum();
+    Map<SootClass, Set<String>> expected = cleanupSequentially(hierarchy);
+    int expectedRemoved =
+        methodCount
+            - expected.values().stream().mapToInt(Set::size).sum()
+            + countDefaultConstructorsToAdd(hierarchy);
+
+    hierarchy.cleanupLibraryClasses();
+
+    for (Map.Entry<SootClass, Set<String>> entry : expected.entrySet()) {
+      assertEquals(
+          entry.getKey().getName(), entry.getValue(), subSignatures(entry.getKey().getMethods()));
+    }
+    assertEquals(expectedRemoved, hierarchy.getRemovedLibraryMethodCount());
+  }
+
+  /**
+   * The abstract method of Task is not referenced by the application, so it is removed before the
+   * cleanup of its subclass, which then does not need to keep its implementation either.
+   */
+  @Test
+  public void testImplementationOfRemovedAbstractMethod() throws Exception {
+    Hierarchy hierarchy = HierarchyFixture.load("cleanup", Collections.emptyList());
+    hierarchy.cleanupLibraryClasses();
+
+    assertFalse(hierarchy.getClass(TASK).declaresMethod("void run()"));
+    assertFalse(hierarchy.getClass(SIMPLE_TASK).declaresMethod("void run()"));
+  }
+
+  /** A private default constructor is made public and kept, the generated library uses it. */
+  @Test
+  public void testPrivateDefaultConstructor() throws Exception {
+    Hierarchy hierarchy = HierarchyFixture.load("cleanup", Collections.emptyList());
+    hierarchy.cleanupLibraryClasses();
+
+    SootMethod constructor =
+        hierarchy.getClass(REGISTRY).getMethodUnsafe(Names.DEFAULT_CONSTRUCTOR_SUBSIG);
+    assertNotNull(constructor);
+    assertTrue(constructor.isPublic());
+  }
+
+  /**
+   * Compute the methods that remain in each library class when the library classes are cleaned up
+   * one after the other, without changing them. Each method is checked against the methods that
+   * remain in its supertypes at that point, and the kept native methods become concrete.
+   */
+  private static Map<SootClass, Set<String>> cleanupSequentially(Hierarchy hierarchy) {
+    Map<SootClass, Set<String>> result = new LinkedHashMap<>();
+    Set<SootMethod> removed = new HashSet<>();
+    Set<SootMethod> madeConcrete = new HashSet<>();
+
+    for (SootClass libraryClass : hierarchy.getLibraryClasses()) {
+      Set<String> methods = subSignatures(libraryClass.getMethods());
+      if (NonFilterClasses.isNonFilterClass(libraryClass.getName())) {
+        result.put(libraryClass, methods);
+        continue;
+      }
+      if (!libraryClass.isInterface()) methods.add(Names.DEFAULT_CONSTRUCTOR_SUBSIG);
+      boolean isExtendedByApplication =
+          hierarchy.getSubclassesOf(libraryClass).stream().anyMatch(hierarchy::isApplicationClass);
+      if (!isExtendedByApplication) {
+        for (SootMethod method : libraryClass.getMethods()) {
+          if (method.getSubSignature().equals(Names.DEFAULT_CONSTRUCTOR_SUBSIG)) continue;
+          if (isRemovable(hierarchy, method, removed, madeConcrete)) {
+            removed.add(method);
+            methods.remove(method.getSubSignature());
+          } else if (method.isNative()) {
+            madeConcrete.add(method);
+          }
+        }
+      }
+      result.put(libraryClass, methods);
+    }
+
+    return result;
+  }
+
+  private static boolean isRemovable(
+      Hierarchy hierarchy, SootMethod method, Set<SootMethod> removed, Set<SootMethod> concrete) {
+    if (method.isPrivate()
+        || isRemovableType(hierarchy, method.getReturnType())
+        || method.getParameterTypes().stream().anyMatch(t -> isRemovableType(hierarchy, t))) {
+      return true;
+    } else if (hierarchy.isBasicLibraryMethod(method)
+        || hierarchy.isLibraryMethodReferencedInApplication(method)) {
+      return false;
+    } else if (!method.isConcrete() || method.isConstructor() || method.isStatic()) {
+      return true;
+    }
+
+    boolean hasConcreteSuperMethod = false;
+    boolean hasAbstractSuperMethod = false;
+    Set<SootClass> supertypes = new HashSet<>();
+    for (SootClass superClass : hierarchy.getSuperclassesOf(method.getDeclaringClass())) {
+      SootMethod m = superClass.getMethodUnsafe(method.getSubSignature());
+      if (m != null && !m.isPrivate()) supertypes.add(superClass);
+    }
+    supertypes.addAll(hierarchy.getSuperinterfacesOf(method.getDeclaringClass()));
+    for (SootClass supertype : supertypes) {
+      SootMethod m = supertype.getMethodUnsafe(method.getSubSignature());
+      if (m != null && !removed.contains(m)) {
+        hasConcreteSuperMethod |= m.isConcrete() || concrete.contains(m);
+        hasAbstractSuperMethod |= m.isAbstract();
+      }
+    }
+    return hasConcreteSuperMethod || !hasAbstractSuperMethod;
+  }
+
+  private static boolean isRemovableType(Hierarchy hierarchy, Type type) {
+    Type baseType = Hierarchy.getBaseType(type);
+    return baseType instanceof RefLikeType && !hierarchy.isLibraryClass(baseType);
+  }
+
+  private static int countDefaultConstructorsToAdd(Hierarchy hierarchy) {
+    return (int)
+        hierarchy.getLibraryClasses().stream()
+            .filter(c -> !NonFilterClasses.isNonFilterClass(c.getName()))
+            .filter(c -> !c.isInterface())
+            .filter(c -> !c.declaresMethod(Names.DEFAULT_CONSTRUCTOR_SUBSIG))
+            .count();
+  }
+
+  private static Set<String> subSignatures(Iterable<SootMethod> methods) {
+    Set<String> result = new TreeSet<>();
+    methods.forEach(m -> result.add(m.getSubSignature()));
+    return result;
+  }
+}
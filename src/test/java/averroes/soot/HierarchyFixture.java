@@ -0,0 +1,116 @@
+package averroes.soot;
+
+import averroes.ArchiveOrganizer;
+import averroes.options.AverroesOptions;
+import averroes.util.io.Paths;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.io.FileUtils;
+import soot.G;
+import soot.Scene;
+import soot.SootClass;
+import soot.options.Options;
+
+/**
+ * Loads a test case of the averroes.testsuite package into Soot and builds the class hierarchy the
+ * same way Averroes does. The classes of the app sub-package of the test case are the application,
+ * the classes of its lib sub-package are the library.
+ */
+public class HierarchyFixture {
+
+  private static final Path TESTSUITE =
+      java.nio.file.Paths.get("target", "test-classes", "averroes", "testsuite");
+
+  /**
+   * Organize the input of the given test case, load it into Soot and build a new class hierarchy.
+   *
+   * @param testCase
+   * @param signatureClasses library classes that Soot should load at the signatures level even if
+   *     the application does not refer to them
+   * @param options additional Averroes options
+   * @return
+   * @throws IOException
+   */
+  public static Hierarchy load(String testCase, List<String> signatureClasses, String... options)
+      throws IOException {
+    File output = new File("target", "hierarchy-" + testCase);
+    FileUtils.deleteQuietly(output);
+    FileUtils.forceMkdir(output);
+    File app = jar(testCase, "app", output);
+    File lib = jar(testCase, "lib", output);
+
+    List<String> args = new ArrayList<>();
+    args.addAll(
+        Arrays.asList(
+            "-r",
+            "averroes.testsuite." + testCase + ".app.**",
+            "-a",
+            app.getAbsolutePath(),
+            "-l",
+            lib.getAbsolutePath(),
+            "-j",
+            "system",
+            "-o",
+            output.getAbsolutePath()));
+    args.addAll(Arrays.asList(options));
+    AverroesOptions.processArguments(args.toArray(new String[0]));
+
+    FileUtils.forceMkdir(Paths.libraryClassesOutputDirectory());
+    new ArchiveOrganizer().organizeInputJarFiles();
+    ClassFileProvider.prepare();
+
+    G.reset();
+    String rtJar =
+        System.getProperty("java.home") + File.separator + "lib" + File.separator + "rt.jar";
+    Options.v()
+        .set_soot_classpath(
+            Stream.of(
+                    Paths.organizedApplicationJarFile().getAbsolutePath(),
+                    Paths.organizedLibraryJarFile().getAbsolutePath(),
+                    rtJar)
+                .collect(Collectors.joining(File.pathSeparator)));
+    Options.v()
+        .set_process_dir(
+            Collections.singletonList(Paths.organizedApplicationJarFile().getAbsolutePath()));
+    Options.v().set_keep_line_number(true);
+    Options.v().setPhaseOption("jb", "use-original-names:true");
+    Options.v().set_wrong_staticness(Options.wrong_staticness_ignore);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().set_ignore_resolving_levels(true);
+    Scene.v().addBasicClass("java.lang.System", SootClass.BODIES);
+    signatureClasses.forEach(c -> Scene.v().addBasicClass(c, SootClass.SIGNATURES));
+    Scene.v().loadNecessaryClasses();
+
+    Hierarchy.reset();
+    return Hierarchy.v();
+  }
+
+  private static File jar(String testCase, String part, File output) throws IOException {
+    Path root = TESTSUITE.getParent().getParent();
+    Path dir = TESTSUITE.resolve(testCase).resolve(part);
+    File jar = new File(output, part + ".jar");
+    try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar.toPath()));
+        Stream<Path> files = Files.walk(dir)) {
+      for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+        out.putNextEntry(new JarEntry(root.relativize(file).toString().replace('\\', '/')));
+        try (InputStream in = Files.newInputStream(file)) {
+          byte[] buffer = new byte[4096];
+          for (int n; (n = in.read(buffer)) > 0; ) out.write(buffer, 0, n);
+        }
+        out.closeEntry();
+      }
+    }
+    return jar;
+  }
+}
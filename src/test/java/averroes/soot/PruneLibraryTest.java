@@ -0,0 +1,37 @@
+package averroes.soot;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import org.junit.Test;
+import soot.SootClass;
+
+public class PruneLibraryTest {
+
+  private static final String SERVICE_IMPL = "averroes.testsuite.prune.lib.ServiceImpl";
+
+  /**
+   * The application only uses the library interface Service. Its only implementation is never
+   * referenced by the application, but the generated library may create objects of it, so pruning
+   * must keep it.
+   */
+  @Test
+  public void testImplementerReachedThroughInterface() throws Exception {
+    Hierarchy hierarchy =
+        HierarchyFixture.load("prune", Collections.singletonList(SERVICE_IMPL), "-pl");
+    SootClass serviceImpl = hierarchy.getClass(SERVICE_IMPL);
+    assertNotNull(serviceImpl);
+    assertTrue(hierarchy.isLibraryClass(serviceImpl));
+
+    hierarchy.cleanupLibraryClasses();
+
+    assertTrue(hierarchy.getLibraryClasses().contains(serviceImpl));
+    assertTrue(
+        hierarchy
+            .getImplementersOf(hierarchy.getClass("averroes.testsuite.prune.lib.Service"))
+            .contains(serviceImpl));
+    assertFalse(hierarchy.getLibraryClasses().isEmpty());
+  }
+}
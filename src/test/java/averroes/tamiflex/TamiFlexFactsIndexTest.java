@@ -0,0 +1,132 @@
+package averroes.tamiflex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TamiFlexFactsIndexTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path log(String name, String... lines) throws IOException {
+    Path log = folder.getRoot().toPath().resolve(name);
+    Files.write(log, Arrays.asList(lines), StandardCharsets.UTF_8);
+    return log;
+  }
+
+  private Path index(String name, Path... inputs) throws IOException {
+    TamiFlexFactsIndex index = new TamiFlexFactsIndex();
+    for (Path input : inputs) {
+      index.add(input);
+    }
+    Path indexFile = folder.getRoot().toPath().resolve(name);
+    index.write(indexFile);
+    return indexFile;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    Path log =
+        log(
+            "refl.log",
+            "Class.forName;a.Foo;a.Main.main;10;;",
+            "Class.forName;a.Foo;a.Main.main;10;;",
+            "Class.forName;a.Foo;a.Main.run;20;;",
+            "Method.invoke;<a.Foo: void bar()>;a.Main.main;11;;",
+            "Array.newInstance;a.Foo[];a.Main.main;12;;",
+            "Unknown.call;a.Bar;a.Main.main;13;;",
+            "");
+    Path indexFile = index("refl.idx", log);
+    assertTrue(TamiFlexFactsIndex.isIndex(indexFile));
+    assertFalse(TamiFlexFactsIndex.isIndex(log));
+
+    TamiFlexFactsDatabase fromIndex = TamiFlexFactsDatabase.load(indexFile);
+    TamiFlexFactsDatabase fromLog = TamiFlexFactsDatabase.load(log);
+    assertEquals(new HashSet<>(Arrays.asList("a.Foo")), fromIndex.getClassForName());
+    assertEquals(fromLog.getClassForName(), fromIndex.getClassForName());
+    assertEquals(fromLog.getMethodInvoke(), fromIndex.getMethodInvoke());
+    assertEquals(fromLog.getArrayNewInstance(), fromIndex.getArrayNewInstance());
+    assertTrue(fromIndex.getClassNewInstance().isEmpty());
+    assertEquals(2, fromIndex.getCallSiteCount(ReflectiveCallType.CLASS_FOR_NAME, "a.Foo"));
+    assertEquals(
+        1, fromIndex.getCallSiteCount(ReflectiveCallType.METHOD_INVOKE, "<a.Foo: void bar()>"));
+  }
+
+  @Test
+  public void testIncrementalMerge() throws IOException {
+    Path first = log("first.log", "Class.forName;a.Foo;a.Main.main;10;;");
+    Path second =
+        log(
+            "second.log",
+            "Class.forName;a.Foo;a.Main.main;10;;",
+            "Class.forName;a.Foo;a.Other.run;5;;",
+            "Class.forName;a.Bar;a.Main.main;11;;");
+    Path indexFile = index("refl.idx", first);
+
+    // merge into the existing index, which is both an input and the output
+    TamiFlexFactsIndex.main(
+        new String[] {indexFile.toString(), indexFile.toString(), second.toString()});
+
+    TamiFlexFactsDatabase database = TamiFlexFactsDatabase.load(indexFile);
+    assertEquals(new HashSet<>(Arrays.asList("a.Foo", "a.Bar")), database.getClassForName());
+    assertEquals(2, database.getCallSiteCount(ReflectiveCallType.CLASS_FOR_NAME, "a.Foo"));
+    assertEquals(1, database.getCallSiteCount(ReflectiveCallType.CLASS_FOR_NAME, "a.Bar"));
+
+    // the same as indexing all the logs at once
+    Path allAtOnce = index("all.idx", first, second);
+    assertTrue(Arrays.equals(Files.readAllBytes(allAtOnce), Files.readAllBytes(indexFile)));
+  }
+
+  @Test
+  public void testTruncatedIndex() throws IOException {
+    Path indexFile = index("refl.idx", log("refl.log", "Class.forName;a.Foo;a.Main.main;10;;"));
+    byte[] bytes = Files.readAllBytes(indexFile);
+    for (int length = 4; length < bytes.length; length++) {
+      Files.write(indexFile, Arrays.copyOf(bytes, length));
+      assertCorrupt(indexFile);
+    }
+  }
+
+  @Test
+  public void testInvalidCallType() throws IOException {
+    Path indexFile = index("refl.idx", log("refl.log", "Class.forName;a.Foo;a.Main.main;10;;"));
+    byte[] bytes = Files.readAllBytes(indexFile);
+    bytes[12] = 42; // the reflective call type of the first fact
+    Files.write(indexFile, bytes);
+    assertCorrupt(indexFile);
+  }
+
+  @Test
+  public void testInvalidFactCount() throws IOException {
+    Path indexFile = index("refl.idx", log("refl.log", "Class.forName;a.Foo;a.Main.main;10;;"));
+    byte[] bytes = Files.readAllBytes(indexFile);
+    bytes[8] = (byte) 0xFF; // the number of facts becomes negative
+    Files.write(indexFile, bytes);
+    assertCorrupt(indexFile);
+
+    bytes[8] = 0;
+    bytes[11] = 2; // more facts than the file holds
+    Files.write(indexFile, bytes);
+    assertCorrupt(indexFile);
+  }
+
+  private void assertCorrupt(Path indexFile) {
+    try {
+      TamiFlexFactsIndex.read(indexFile, (type, target, callSiteCount) -> {});
+      fail("Expected an IOException for a corrupt index");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("Corrupt TamiFlex facts index"));
+    }
+  }
+}
@@ -0,0 +1,13 @@
+package averroes.testsuite.cleanup.app;
+
+import averroes.testsuite.cleanup.lib.Registry;
+import averroes.testsuite.cleanup.lib.SimpleTask;
+import averroes.testsuite.cleanup.lib.Task;
+
+public class Main {
+
+  public static void main(String[] args) {
+    Task task = new SimpleTask();
+    Registry.get().register(task);
+  }
+}
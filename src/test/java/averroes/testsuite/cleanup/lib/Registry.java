@@ -0,0 +1,22 @@
+package averroes.testsuite.cleanup.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** A library singleton with a private default constructor. */
+public class Registry {
+
+  private static final Registry INSTANCE = new Registry();
+
+  private List<Task> tasks = new ArrayList<Task>();
+
+  private Registry() {}
+
+  public static Registry get() {
+    return INSTANCE;
+  }
+
+  public void register(Task task) {
+    tasks.add(task);
+  }
+}
@@ -0,0 +1,8 @@
+package averroes.testsuite.cleanup.lib;
+
+/** A library implementation of {@link Task} that the application creates. */
+public class SimpleTask extends Task {
+
+  @Override
+  public void run() {}
+}
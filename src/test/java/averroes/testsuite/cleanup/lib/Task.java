@@ -0,0 +1,7 @@
+package averroes.testsuite.cleanup.lib;
+
+/** A library task. The application never calls its abstract method. */
+public abstract class Task {
+
+  public abstract void run();
+}
@@ -0,0 +1,10 @@
+package averroes.testsuite.prune.app;
+
+import averroes.testsuite.prune.lib.Services;
+
+public class Main {
+
+  public static void main(String[] args) {
+    Services.create().run();
+  }
+}
@@ -0,0 +1,7 @@
+package averroes.testsuite.prune.lib;
+
+/** A library interface that the application only uses through its factory. */
+public interface Service {
+
+  void run();
+}
@@ -0,0 +1,11 @@
+package averroes.testsuite.prune.lib;
+
+/**
+ * The only implementation of {@link Service}. The application never refers to it, it is only
+ * reached through the interface.
+ */
+class ServiceImpl implements Service {
+
+  @Override
+  public void run() {}
+}
@@ -0,0 +1,9 @@
+package averroes.testsuite.prune.lib;
+
+/** Creates the library services. */
+public class Services {
+
+  public static Service create() {
+    return new ServiceImpl();
+  }
+}
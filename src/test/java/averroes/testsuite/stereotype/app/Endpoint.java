@@ -0,0 +1,11 @@
+package averroes.testsuite.stereotype.app;
+
+import averroes.testsuite.stereotype.lib.RestController;
+
+@RestController
+public class Endpoint {
+
+  public String handle() {
+    return "ok";
+  }
+}
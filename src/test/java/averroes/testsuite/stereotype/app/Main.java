@@ -0,0 +1,8 @@
+package averroes.testsuite.stereotype.app;
+
+public class Main {
+
+  public static void main(String[] args) {
+    System.out.println(new Endpoint().handle());
+  }
+}
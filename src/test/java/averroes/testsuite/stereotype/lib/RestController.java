@@ -0,0 +1,12 @@
+package averroes.testsuite.stereotype.lib;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** A library stereotype that reaches the root stereotype through another library stereotype. */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Controller
+public @interface RestController {}
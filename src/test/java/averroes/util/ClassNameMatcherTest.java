@@ -0,0 +1,77 @@
+package averroes.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class ClassNameMatcherTest {
+
+  private ClassNameMatcher compile(String... patterns) {
+    return ClassNameMatcher.compile(Arrays.asList(patterns));
+  }
+
+  @Test
+  public void testPackage() {
+    ClassNameMatcher matcher = compile("org.example.*");
+    assertTrue(matcher.matches("org.example.Foo"));
+    assertTrue(matcher.matches("ORG.Example.foo"));
+    assertFalse(matcher.matches("org.example.sub.Foo"));
+    assertFalse(matcher.matches("org.examples.Foo"));
+    assertFalse(matcher.matches("org.Foo"));
+    assertFalse(matcher.matches("Foo"));
+  }
+
+  @Test
+  public void testSubPackages() {
+    ClassNameMatcher matcher = compile("org.example.**");
+    assertTrue(matcher.matches("org.example.Foo"));
+    assertTrue(matcher.matches("org.example.sub.Foo"));
+    assertTrue(matcher.matches("org.example.sub.sub.Foo$Inner"));
+    assertFalse(matcher.matches("org.examples.Foo"));
+    assertFalse(matcher.matches("org.Example.Foo"));
+    assertFalse(matcher.matches("org.example"));
+  }
+
+  @Test
+  public void testDefaultPackage() {
+    ClassNameMatcher matcher = compile("**");
+    assertTrue(matcher.matches("Foo"));
+    assertFalse(matcher.matches("org.Foo"));
+  }
+
+  @Test
+  public void testClassName() {
+    ClassNameMatcher matcher = compile("org.example.Foo");
+    assertTrue(matcher.matches("org.example.Foo"));
+    assertTrue(matcher.matches("org.example.foo"));
+    assertFalse(matcher.matches("org.example.Fo"));
+    assertFalse(matcher.matches("org.example.Foo2"));
+    assertFalse(matcher.matches("org.example.Foo$Inner"));
+    assertFalse(matcher.matches("org.example.Bar"));
+  }
+
+  @Test
+  public void testMixedPatterns() {
+    ClassNameMatcher matcher = compile("org.a.*", "org.a.b.C", " org.d.** ", "Main");
+    assertTrue(matcher.matches("org.a.X"));
+    assertTrue(matcher.matches("org.a.b.C"));
+    assertFalse(matcher.matches("org.a.b.D"));
+    assertTrue(matcher.matches("org.d.e.F"));
+    assertTrue(matcher.matches("Main"));
+    assertFalse(matcher.matches("Other"));
+    assertFalse(matcher.isEmpty());
+  }
+
+  @Test
+  public void testEmpty() {
+    assertTrue(ClassNameMatcher.compile(null).isEmpty());
+    assertTrue(ClassNameMatcher.compile(Collections.emptyList()).isEmpty());
+    ClassNameMatcher matcher = compile("", "  ");
+    assertTrue(matcher.isEmpty());
+    assertFalse(matcher.matches("Foo"));
+    assertFalse(matcher.matches("org.example.Foo"));
+  }
+}
@@ -0,0 +1,79 @@
+package averroes.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class LongObjectMapTest {
+
+  @Test
+  public void testMissingKeys() {
+    LongObjectMap<String> map = new LongObjectMap<>();
+    assertNull(map.get(0));
+    assertNull(map.get(-1));
+    map.put(42, "a");
+    assertNull(map.get(0));
+    assertNull(map.get(43));
+    assertNull(map.get(42L << 32));
+    assertNull(map.get(Long.MIN_VALUE));
+  }
+
+  @Test
+  public void testPutAndReplace() {
+    LongObjectMap<String> map = new LongObjectMap<>();
+    assertNull(map.put(0, "zero"));
+    assertNull(map.put(-7, "negative"));
+    assertNull(map.put(Long.MAX_VALUE, "max"));
+    assertEquals("zero", map.put(0, "ZERO"));
+    assertEquals("ZERO", map.get(0));
+    assertEquals("negative", map.get(-7));
+    assertEquals("max", map.get(Long.MAX_VALUE));
+  }
+
+  /**
+   * The keys of the override index combine a class number in the high bits with a subsignature
+   * number in the low bits. Filling the initial table up to the resize threshold with such keys
+   * makes several of them probe past occupied slots.
+   */
+  @Test
+  public void testCollisions() {
+    LongObjectMap<Long> map = new LongObjectMap<>();
+    for (long c = 0; c < 4; c++) {
+      for (long m = 0; m < 4; m++) {
+        long key = (c << 32) | m;
+        map.put(key, key);
+      }
+    }
+    for (long c = 0; c < 4; c++) {
+      for (long m = 0; m < 4; m++) {
+        long key = (c << 32) | m;
+        assertEquals(Long.valueOf(key), map.get(key));
+      }
+      assertNull(map.get((c << 32) | 4));
+    }
+  }
+
+  @Test
+  public void testGrowth() {
+    LongObjectMap<Integer> map = new LongObjectMap<>();
+    int count = 100_000;
+    for (int i = 0; i < count; i++) {
+      map.put(i * 31L, i);
+    }
+    for (int i = 0; i < count; i++) {
+      assertEquals(Integer.valueOf(i), map.get(i * 31L));
+      assertNull(map.get(i * 31L + 1));
+    }
+    // replacing values after resizing does not add any keys
+    for (int i = 0; i < count; i++) {
+      assertEquals(Integer.valueOf(i), map.put(i * 31L, -i));
+    }
+    assertEquals(Integer.valueOf(-5), map.get(5 * 31L));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullValue() {
+    new LongObjectMap<String>().put(1, null);
+  }
+}
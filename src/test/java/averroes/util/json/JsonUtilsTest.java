@@ -0,0 +1,71 @@
+package averroes.util.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import averroes.frameworks.Main;
+import averroes.frameworks.analysis.XtaJimpleBody;
+import averroes.soot.SootSceneUtil;
+import averroes.tests.CommonOptions;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import soot.SootClass;
+
+public class JsonUtilsTest {
+
+  private static final String TEST_CASE = "ll";
+
+  /**
+   * The streamed JSON of each generated class holds the same facts as the Gson serialization of
+   * {@link JsonUtils#toJson(SootClass)}. The keys are written in a different order, so both are
+   * compared after reading them back.
+   */
+  @Test
+  public void testWriteJsonSameAsGson() throws IOException {
+    File output = new File("target", "json-utils-" + TEST_CASE);
+    FileUtils.deleteQuietly(output);
+    Main.main(
+        new String[] {
+          "-i",
+          CommonOptions.getInputProject(TEST_CASE),
+          "-p",
+          "averroes.testsuite." + TEST_CASE + ".input",
+          "-o",
+          output.getPath(),
+          "-j",
+          CommonOptions.jre,
+          "-a",
+          XtaJimpleBody.name
+        });
+
+    Gson gson = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
+    Set<SootClass> classes = SootSceneUtil.getClasses();
+    assertFalse(classes.isEmpty());
+    for (SootClass cls : classes) {
+      File streamed = new File(output, cls.getName() + ".streamed.json");
+      try (Writer out = Files.newBufferedWriter(streamed.toPath(), StandardCharsets.UTF_8)) {
+        JsonUtils.writeJson(cls, out);
+      }
+      File serialized = new File(output, cls.getName() + ".gson.json");
+      FileUtils.writeStringToFile(
+          serialized, gson.toJson(JsonUtils.toJson(cls)), StandardCharsets.UTF_8);
+
+      SootClassJson expected = JsonUtils.fromJson(serialized);
+      SootClassJson actual = JsonUtils.fromJson(streamed);
+      String name = cls.getName();
+      assertEquals(
+          name, expected.getMethodToObjectCreations(), actual.getMethodToObjectCreations());
+      assertEquals(name, expected.getMethodToInvocations(), actual.getMethodToInvocations());
+      assertEquals(name, expected.getMethodToFieldReads(), actual.getMethodToFieldReads());
+      assertEquals(name, expected.getMethodToFieldWrites(), actual.getMethodToFieldWrites());
+    }
+  }
+}